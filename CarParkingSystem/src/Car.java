@@ -24,11 +24,25 @@ public class Car {
      * @param year the year of the car
      */
     public Car(String registrationNumber, String make, String model, int year) {
+        this(registrationNumber, make, model, year, LocalDateTime.now()); // Set parking time to the current time
+    }
+
+    /**
+     * Constructs a Car object with the specified details and a known parking time,
+     * as when restoring a car that was parked before a restart.
+     *
+     * @param registrationNumber the registration number of the car
+     * @param make the make of the car
+     * @param model the model of the car
+     * @param year the year of the car
+     * @param parkingTime the time when the car was parked
+     */
+    public Car(String registrationNumber, String make, String model, int year, LocalDateTime parkingTime) {
         this.registrationNumber = registrationNumber;
         this.make = make;
         this.model = model;
         this.year = year;
-        this.parkingTime = LocalDateTime.now(); // Set parking time to the current time
+        this.parkingTime = parkingTime;
     }
 
     /**
@@ -3,21 +3,155 @@
  * @author 
  * @version 5.2.1
  */
+import util.SpotSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manages a car park with multiple parking spots.
+ * <p>
+ * A car park created with {@code new CarPark(true)} may be shared by many gate threads. Each
+ * operation then locks only the stripes guarding the spot ID and registration number it touches,
+ * so a spot never holds more than one car and a registration number is never parked twice,
+ * while operations on unrelated spots run in parallel. Lookups never wait for one another.
+ * <p>
+ * Resetting takes constant time however large the car park: it starts a new epoch of the slot
+ * table, and cars parked in earlier epochs no longer count as parked. Their spots and index
+ * entries are cleared later, when the spot is next used or by {@link #sweepStaleSpots()}, which
+ * runs in the background after each reset in concurrent mode.
  */
 public class CarPark {
-    // Map to store parking spots by their IDs
-    private Map<String, ParkingSpot> spots;
+    private static final int BATCH_LOCK_SPOTS = 256; // Spots of a batch added per hold of every lock
+
+    // Dense table of the parking spots, with the index of occupied spots by registration number
+    private SpotSlotTable spotTable;
+    // Occupied spots grouped by normalized make, and by normalized make and model
+    private Map<String, MakeBucket> makeIndex;
+    private Map<String, MakeBucket> makeModelIndex;
+    private boolean concurrent; // Whether the car park is shared between threads
+    private StripedLock locks; // Guards spot IDs and registration numbers, null unless concurrent
+    private CarParkJournal journal; // Write-ahead journal of every change, null if the car park is not persisted
+    private List<CarParkListener> listeners = new CopyOnWriteArrayList<>(); // Told about every change
+    private AtomicBoolean sweeping = new AtomicBoolean(); // Whether a background sweep is running
 
     /**
-     * Constructs a CarPark object with an empty list of parking spots.
+     * Constructs a CarPark object with an empty list of parking spots, for use by a single thread.
      */
     public CarPark() {
-        spots = new HashMap<>();
+        this(false);
+    }
+
+    /**
+     * Constructs a CarPark object with an empty list of parking spots.
+     *
+     * @param concurrent true if the car park will be used by several threads at once
+     */
+    public CarPark(boolean concurrent) {
+        this.concurrent = concurrent;
+        spotTable = new SpotSlotTable();
+        makeIndex = newMap();
+        makeModelIndex = newMap();
+        locks = concurrent ? StripedLock.forAvailableProcessors() : null;
+    }
+
+    /**
+     * Checks whether this car park is safe to share between threads.
+     *
+     * @return true if the car park was created in concurrent mode
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * Constructs a car park from a binary snapshot written by {@link #writeSnapshot}.
+     * Records are read straight from the mapped file, without replaying any journal.
+     *
+     * @param snapshot the open snapshot
+     * @param concurrent true if the car park will be used by several threads at once
+     * @return the restored car park
+     */
+    public static CarPark fromSnapshot(SpotSnapshot snapshot, boolean concurrent) {
+        CarPark carPark = new CarPark(concurrent);
+        carPark.restore(snapshot);
+        return carPark;
+    }
+
+    /**
+     * Adds every spot and parked car of a binary snapshot to this empty car park, without
+     * journaling them or telling listeners. Called by {@link #fromSnapshot} and by
+     * {@link CarParkJournal#open} when it starts from a checkpoint.
+     *
+     * @param snapshot the open snapshot
+     */
+    void restore(SpotSnapshot snapshot) {
+        for (int i = 0; i < snapshot.size(); i++) {
+            String spotId = snapshot.spotId(i);
+            ParkingSpot spot = new ParkingSpot(spotId);
+            spotTable.add(spot); // Snapshot IDs are unique, no need to check
+            if (snapshot.isOccupied(i)) {
+                spot.parkCar(new Car(snapshot.registration(i), snapshot.make(i), snapshot.model(i),
+                        snapshot.number(i), snapshot.parkedAt(i)));
+                indexCar(spot);
+            }
+        }
+    }
+
+    /**
+     * Writes every spot and parked car to a binary snapshot file.
+     * The file holds the car park as it was when the call was made, even in concurrent mode
+     * while other threads keep changing it.
+     *
+     * @param file the snapshot file, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        snapshot().writeTo(file);
+    }
+
+    /**
+     * Attaches the journal that every later change is written to. Called by {@link CarParkJournal#open}
+     * once the journal has been replayed into this car park. Each change is journaled before it
+     * is made, so a change the journal refuses, once it is closed or has failed, is not made at
+     * all and listeners are not told about it.
+     *
+     * @param journal the open journal
+     */
+    void attachJournal(CarParkJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Registers a listener to be told about every later change to the car park.
+     *
+     * @param listener the listener
+     */
+    public void addCarParkListener(CarParkListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stops telling a listener about changes.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeCarParkListener(CarParkListener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -27,7 +161,7 @@ public class CarPark {
      * @return the ParkingSpot object if found, null otherwise
      */
     public ParkingSpot findSpot(String id) {
-        return spots.get(id);
+        return spotTable.find(id); // An array read for packed IDs, no String hashing
     }
 
     /**
@@ -38,15 +172,27 @@ public class CarPark {
      * @return true if the car was parked successfully, false otherwise
      */
     public boolean parkCar(String spotId, Car car) {
-        if (isCarInPark(car.getRegistrationNumber())) {
-            return false; // Car with the same registration number already parked
-        }
-        ParkingSpot spot = spots.get(spotId);
-        if (spot != null && !spot.isOccupied()) {
+        String regNumber = car.getRegistrationNumber();
+        long seq;
+        lock(spotId, regNumber); // Both checks below must still hold when the car is parked
+        try {
+            if (isCarInPark(regNumber)) {
+                return false; // Car with the same registration number already parked
+            }
+            ParkingSpot spot = findSpot(spotId);
+            if (spot == null || spot.isOccupied()) {
+                return false; // Spot is either null or already occupied
+            }
+            seq = journal == null ? 0 : journal.park(spotId, car); // Journaled first, so if this throws nothing has changed
+            purgeStale(spot); // A car left from before a reset must leave the indexes first
             spot.parkCar(car); // Park the car in the spot
-            return true;
+            indexCar(spot);
+            fire(CarParkEvent.Type.PARKED, spotId, car);
+        } finally {
+            unlock(spotId, regNumber);
         }
-        return false; // Spot is either null or already occupied
+        awaitJournal(seq); // Outside the locks, so other gates are not held up by the disk
+        return true;
     }
 
     /**
@@ -56,12 +202,7 @@ public class CarPark {
      * @return true if the car is already in the park, false otherwise
      */
     public boolean isCarInPark(String regNumber) {
-        for (ParkingSpot spot : spots.values()) {
-            if (spot.isOccupied() && spot.getCar().getRegistrationNumber().equals(regNumber)) {
-                return true; // Car found in the park
-            }
-        }
-        return false; // Car not found in the park
+        return findCarByRegNumber(regNumber) != null;
     }
 
     /**
@@ -71,12 +212,31 @@ public class CarPark {
      * @return true if the car was removed successfully, false otherwise
      */
     public boolean removeCarBySpot(String spotId) {
-        ParkingSpot spot = spots.get(spotId);
-        if (spot != null && spot.isOccupied()) {
-            spot.removeCar(); // Remove the car from the spot
-            return true;
+        while (true) {
+            ParkingSpot spot = findSpot(spotId);
+            Car car = spot == null ? null : spot.getCar();
+            if (car == null) {
+                return false; // Spot is either null or not occupied
+            }
+            String regNumber = car.getRegistrationNumber();
+            long seq = -1;
+            lock(spotId, regNumber);
+            try {
+                if (findSpot(spotId) == spot && spot.getCar() == car) {
+                    seq = journal == null ? 0 : journal.remove(spotId);
+                    unindexCar(spot);
+                    spot.removeCar(); // Remove the car from the spot
+                    fire(CarParkEvent.Type.REMOVED, spotId, car);
+                }
+            } finally {
+                unlock(spotId, regNumber);
+            }
+            if (seq >= 0) {
+                awaitJournal(seq);
+                return true;
+            }
+            // Another gate changed the spot before we locked it, look again
         }
-        return false; // Spot is either null or not occupied
     }
 
     /**
@@ -86,13 +246,31 @@ public class CarPark {
      * @return true if the car was removed successfully, false otherwise
      */
     public boolean removeCarByRegNumber(String regNumber) {
-        for (ParkingSpot spot : spots.values()) {
-            if (spot.isOccupied() && spot.getCar().getRegistrationNumber().equals(regNumber)) {
-                spot.removeCar(); // Remove the car from the spot
+        while (true) {
+            ParkingSpot spot = findCarByRegNumber(regNumber);
+            if (spot == null) {
+                return false; // Car not found in the park
+            }
+            String spotId = spot.getId();
+            long seq = -1;
+            lock(spotId, regNumber);
+            try {
+                if (findCarByRegNumber(regNumber) == spot) {
+                    Car car = spot.getCar();
+                    seq = journal == null ? 0 : journal.remove(spotId);
+                    unindexCar(spot);
+                    spot.removeCar(); // Remove the car from the spot
+                    fire(CarParkEvent.Type.REMOVED, spotId, car);
+                }
+            } finally {
+                unlock(spotId, regNumber);
+            }
+            if (seq >= 0) {
+                awaitJournal(seq);
                 return true;
             }
+            // The car left or moved before we locked its spot, look again
         }
-        return false; // Car not found in the park
     }
 
     /**
@@ -102,28 +280,30 @@ public class CarPark {
      * @return the ParkingSpot object if found, null otherwise
      */
     public ParkingSpot findCarByRegNumber(String regNumber) {
-        for (ParkingSpot spot : spots.values()) {
-            if (spot.isOccupied() && spot.getCar().getRegistrationNumber().equals(regNumber)) {
-                return spot; // Spot containing the car found
-            }
-        }
-        return null; // Car not found in any spot
+        return spotTable.findByPlate(regNumber); // null if the car is not in any spot
     }
 
     /**
      * Finds and returns all parking spots containing cars of a specific make.
+     * The make is matched ignoring case and surrounding whitespace.
      *
      * @param make the make of the car
-     * @return a map of parking spots containing cars of the specified make
+     * @return a read-only live view of the parking spots containing cars of the specified make
      */
     public Map<String, ParkingSpot> findCarsByMake(String make) {
-        Map<String, ParkingSpot> result = new HashMap<>();
-        for (ParkingSpot spot : spots.values()) {
-            if (spot.isOccupied() && spot.getCar().getMake().equalsIgnoreCase(make)) {
-                result.put(spot.getId(), spot); // Add spot to the result map
-            }
-        }
-        return result; // Return all spots containing cars of the specified make
+        return readOnlyView(makeIndex.get(normalize(make)), spotTable);
+    }
+
+    /**
+     * Finds and returns all parking spots containing cars of a specific make and model.
+     * Both values are matched ignoring case and surrounding whitespace.
+     *
+     * @param make the make of the car
+     * @param model the model of the car
+     * @return a read-only live view of the parking spots containing cars of the specified make and model
+     */
+    public Map<String, ParkingSpot> findCarsByMakeAndModel(String make, String model) {
+        return readOnlyView(makeModelIndex.get(makeModelKey(make, model)), spotTable);
     }
 
     /**
@@ -133,13 +313,70 @@ public class CarPark {
      * @return true if the spot was added successfully, false otherwise
      */
     public boolean addSpot(String spotId) {
-        if (spots.containsKey(spotId)) {
-            return false; // Spot with the same ID already exists
+        long seq;
+        lock(spotId); // Orders the journal record with other changes to the spot
+        try {
+            if (findSpot(spotId) != null) {
+                return false; // Spot with the same ID already exists
+            }
+            seq = journal == null ? 0 : journal.addSpot(spotId);
+            spotTable.add(new ParkingSpot(spotId)); // The lock keeps the ID free since the check
+            fire(CarParkEvent.Type.ADDED, spotId, null);
+        } finally {
+            unlock(spotId);
         }
-        spots.put(spotId, new ParkingSpot(spotId)); // Add new spot to the map
+        awaitJournal(seq);
         return true;
     }
 
+    /**
+     * Adds a batch of parking spots, parking a car in each spot that comes with one. Meant for
+     * bulk imports: in concurrent mode the gates are held up once per few hundred spots rather
+     * than locked per spot, and the journal is waited on once at the end. Each spot and car is
+     * journaled before it is added, so if the journal fails the spots before it stay added and
+     * the rest are not. Between those chunks the gates keep moving, so a large import
+     * never stalls them for longer than a few hundred journal records and listener calls. A spot
+     * whose ID is taken is skipped, as is a car already parked elsewhere, so importing the same
+     * spots twice adds nothing the second time.
+     *
+     * @param spotIds the IDs of the new spots
+     * @param cars the car to park in each new spot, or null for a vacant spot
+     * @param count the number of entries to add
+     * @return the number of spots added
+     */
+    public int addSpots(String[] spotIds, Car[] cars, int count) {
+        long seq = 0;
+        int added = 0;
+        for (int from = 0; from < count; from += BATCH_LOCK_SPOTS) {
+            int to = Math.min(count, from + BATCH_LOCK_SPOTS);
+            lockAll(); // One lock per chunk; no other change can slip in between its spots and cars
+            try {
+                for (int i = from; i < to; i++) {
+                    String spotId = spotIds[i];
+                    if (findSpot(spotId) != null) {
+                        continue; // Spot with the same ID already exists
+                    }
+                    seq = journal == null ? 0 : journal.addSpot(spotId);
+                    ParkingSpot spot = new ParkingSpot(spotId);
+                    spotTable.add(spot);
+                    added++;
+                    fire(CarParkEvent.Type.ADDED, spotId, null);
+                    Car car = cars[i];
+                    if (car != null && !isCarInPark(car.getRegistrationNumber())) {
+                        seq = journal == null ? 0 : journal.park(spotId, car);
+                        spot.parkCar(car);
+                        indexCar(spot);
+                        fire(CarParkEvent.Type.PARKED, spotId, car);
+                    }
+                }
+            } finally {
+                unlockAll();
+            }
+        }
+        awaitJournal(seq); // Records are durable in order, so the last one covers the batch
+        return added;
+    }
+
     /**
      * Deletes a parking spot from the car park if it's not occupied.
      *
@@ -147,32 +384,371 @@ public class CarPark {
      * @return true if the spot was deleted successfully, false otherwise
      */
     public boolean deleteSpot(String spotId) {
-        ParkingSpot spot = spots.get(spotId);
-        if (spot != null && !spot.isOccupied()) {
-            spots.remove(spotId); // Remove the spot from the map
-            return true;
+        long seq;
+        lock(spotId); // Keeps a car from parking between the check and the removal
+        try {
+            ParkingSpot spot = findSpot(spotId);
+            if (spot == null || spot.isOccupied()) {
+                return false; // Spot is either null or occupied
+            }
+            seq = journal == null ? 0 : journal.deleteSpot(spotId);
+            purgeStale(spot); // Only a car left from before a reset can still be indexed
+            spotTable.remove(spot); // Remove the spot from the table
+            fire(CarParkEvent.Type.DELETED, spotId, null);
+        } finally {
+            unlock(spotId);
         }
-        return false; // Spot is either null or occupied
+        awaitJournal(seq);
+        return true;
     }
 
     /**
-     * Resets the car park by removing all cars from the spots.
+     * Resets the car park by removing all cars from the spots, in constant time however many
+     * cars are parked. Listeners are only told about the reset, not about each car.
+     * In concurrent mode the reset waits for the operations under way to finish and holds up
+     * new ones only while the epoch changes, so it falls cleanly between other changes.
      */
     public void resetCarPark() {
-        for (ParkingSpot spot : spots.values()) {
+        long seq;
+        lockAll();
+        try {
+            seq = journal == null ? 0 : journal.reset();
+            spotTable.reset(); // Every car parked so far now belongs to an earlier epoch
+            fire(CarParkEvent.Type.RESET, null, null);
+        } finally {
+            unlockAll();
+        }
+        if (concurrent) {
+            sweepInBackground();
+        }
+        awaitJournal(seq);
+    }
+
+    /**
+     * Clears the cars left by earlier resets from their spots and from the indexes. Each spot
+     * is cleared under its own lock, so gates are held up by at most one spot at a time.
+     * Single-threaded car parks otherwise only clear a spot when it is next parked in or deleted.
+     *
+     * @return the number of spots cleared
+     */
+    public int sweepStaleSpots() {
+        int swept = 0;
+        for (ParkingSpot spot : spotTable.staleSpots()) { // Only the occupied slots, from the occupancy column
+            String spotId = spot.getId();
+            lock(spotId);
+            try {
+                if (purgeStale(spot)) {
+                    swept++;
+                }
+            } finally {
+                unlock(spotId);
+            }
+        }
+        return swept;
+    }
+
+    /**
+     * Checks that the registration number and make indexes match the cars actually parked in the spots.
+     * This sweeps stale cars and walks every spot, and is meant for tests and diagnostics, not for
+     * normal operation. In concurrent mode the result is only meaningful while no other thread is
+     * changing the car park.
+     *
+     * @return true if every parked car is indexed to its spot and the indexes hold nothing else
+     */
+    public boolean isIndexConsistent() {
+        sweepStaleSpots(); // Stale entries are expected until swept
+        int occupied = 0;
+        for (ParkingSpot spot : spotTable.asMap().values()) {
             if (spot.isOccupied()) {
-                spot.removeCar(); // Remove the car from each spot
+                occupied++;
+                Car car = spot.getCar();
+                if (findCarByRegNumber(car.getRegistrationNumber()) != spot
+                        || findCarsByMake(car.getMake()).get(spot.getId()) != spot
+                        || findCarsByMakeAndModel(car.getMake(), car.getModel()).get(spot.getId()) != spot) {
+                    return false; // Parked car is missing from an index or indexed to another spot
+                }
+            }
+        }
+        // Indexes and the occupancy counter must not hold stale entries
+        return occupied == spotTable.getOccupiedCount()
+                && occupied == spotTable.countOccupied()
+                && occupied == spotTable.getPlateCount()
+                && occupied == countIndexed(makeIndex, spotTable.getEpoch())
+                && occupied == countIndexed(makeModelIndex, spotTable.getEpoch());
+    }
+
+    /**
+     * Adds the car parked in a spot to all car indexes and counts the spot as occupied.
+     *
+     * @param spot the occupied parking spot
+     */
+    private void indexCar(ParkingSpot spot) {
+        Car car = spot.getCar();
+        spotTable.occupy(spot, car); // Also counts the spot as occupied
+        int epoch = spotTable.getEpoch();
+        makeIndex.computeIfAbsent(normalize(car.getMake()), key -> new MakeBucket(newMap())).add(spot, epoch);
+        makeModelIndex.computeIfAbsent(makeModelKey(car.getMake(), car.getModel()), key -> new MakeBucket(newMap()))
+                .add(spot, epoch);
+    }
+
+    /**
+     * Removes the car parked in a spot from all car indexes and counts the spot as vacant.
+     * Must be called before the car leaves the spot.
+     *
+     * @param spot the occupied parking spot
+     */
+    private void unindexCar(ParkingSpot spot) {
+        Car car = spot.getCar();
+        spotTable.vacate(spot, car);
+        unindexMake(spot, car, true);
+    }
+
+    /**
+     * Clears a car left in a spot by an earlier reset from the spot and all car indexes.
+     * Called with the lock of the spot held.
+     *
+     * @param spot the parking spot
+     * @return true if the spot held a stale car
+     */
+    private boolean purgeStale(ParkingSpot spot) {
+        Car car = spot.getStaleCar();
+        if (car == null || !spotTable.purge(spot, car)) {
+            return false;
+        }
+        unindexMake(spot, car, false);
+        spot.removeCar();
+        return true;
+    }
+
+    /**
+     * Removes a spot from the make and the make and model buckets of a car.
+     *
+     * @param spot the parking spot
+     * @param car the car that was parked in it
+     * @param parked true if the car is still parked, false if a reset already cleared it
+     */
+    private void unindexMake(ParkingSpot spot, Car car, boolean parked) {
+        // Empty buckets are kept so that views returned earlier keep tracking the make
+        int epoch = spotTable.getEpoch();
+        MakeBucket bucket = makeIndex.get(normalize(car.getMake()));
+        if (bucket != null) {
+            bucket.remove(spot, parked, epoch);
+        }
+        bucket = makeModelIndex.get(makeModelKey(car.getMake(), car.getModel()));
+        if (bucket != null) {
+            bucket.remove(spot, parked, epoch);
+        }
+    }
+
+    /**
+     * Runs {@link #sweepStaleSpots()} on a background thread unless one is already running,
+     * in which case that thread sweeps again before it stops.
+     */
+    private void sweepInBackground() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        Thread sweeper = new Thread(() -> {
+            do {
+                sweepStaleSpots();
+                sweeping.set(false);
+            } while (!spotTable.staleSpots().isEmpty() && sweeping.compareAndSet(false, true)); // Reset again meanwhile
+        }, "car-park-sweeper");
+        sweeper.setDaemon(true); // Must not keep the program alive
+        sweeper.start();
+    }
+
+    /**
+     * Tells every listener about a change. Called with the locks of the spot still held,
+     * so that each listener sees the changes to a spot in order.
+     *
+     * @param type the kind of change
+     * @param spotId the ID of the spot that changed, null for a reset
+     * @param car the car that was parked or removed, null for other changes
+     */
+    private void fire(CarParkEvent.Type type, String spotId, Car car) {
+        if (listeners.isEmpty()) {
+            return; // Nobody to tell, skip creating the event
+        }
+        CarParkEvent event = new CarParkEvent(type, spotId, car);
+        for (CarParkListener listener : listeners) {
+            listener.carParkChanged(event);
+        }
+    }
+
+    /**
+     * Waits for a journal record to become as durable as the journal's fsync policy promises.
+     * Must be called after releasing the spot locks.
+     *
+     * @param seq the journal sequence number of the record, or 0 or less if nothing was journaled
+     */
+    private void awaitJournal(long seq) {
+        if (journal != null && seq > 0) {
+            journal.awaitDurable(seq);
+        }
+    }
+
+    /**
+     * Creates a map suited to the car park's threading mode.
+     *
+     * @return a concurrent map in concurrent mode, a plain hash map otherwise
+     */
+    private <K, V> Map<K, V> newMap() {
+        return concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+
+    /**
+     * Locks the stripe guarding a key when in concurrent mode.
+     *
+     * @param key the spot ID or registration number
+     */
+    private void lock(String key) {
+        if (locks != null) {
+            locks.lock(key);
+        }
+    }
+
+    /**
+     * Unlocks the stripe guarding a key when in concurrent mode.
+     *
+     * @param key the spot ID or registration number
+     */
+    private void unlock(String key) {
+        if (locks != null) {
+            locks.unlock(key);
+        }
+    }
+
+    /**
+     * Locks the stripes guarding a spot and a registration number when in concurrent mode.
+     *
+     * @param spotId the ID of the parking spot
+     * @param regNumber the registration number of the car
+     */
+    private void lock(String spotId, String regNumber) {
+        if (locks != null) {
+            locks.lock(spotId, regNumber);
+        }
+    }
+
+    /**
+     * Unlocks the stripes guarding a spot and a registration number when in concurrent mode.
+     *
+     * @param spotId the ID of the parking spot
+     * @param regNumber the registration number of the car
+     */
+    private void unlock(String spotId, String regNumber) {
+        if (locks != null) {
+            locks.unlock(spotId, regNumber);
+        }
+    }
+
+    /**
+     * Locks every stripe when in concurrent mode, so that no other change is under way.
+     */
+    private void lockAll() {
+        if (locks != null) {
+            locks.lockAll();
+        }
+    }
+
+    /**
+     * Unlocks every stripe when in concurrent mode.
+     */
+    private void unlockAll() {
+        if (locks != null) {
+            locks.unlockAll();
+        }
+    }
+
+    /**
+     * Normalizes a make or model so that lookups ignore case and surrounding whitespace.
+     *
+     * @param value the make or model, may be null
+     * @return the normalized value
+     */
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Builds the make and model index key.
+     *
+     * @param make the make of the car
+     * @param model the model of the car
+     * @return the normalized combined key
+     */
+    private static String makeModelKey(String make, String model) {
+        return normalize(make) + '\u0000' + normalize(model); // Separator cannot appear in typed input
+    }
+
+    /**
+     * Wraps an index bucket in a read-only view without copying it.
+     *
+     * @param bucket the index bucket, may be null
+     * @param table the slot table, whose epoch tells which cars are still parked
+     * @return a read-only view of the bucket, or an empty map if there is none
+     */
+    private static Map<String, ParkingSpot> readOnlyView(MakeBucket bucket, SpotSlotTable table) {
+        return bucket == null ? Collections.emptyMap() : new ParkedSpotsView(bucket, table);
+    }
+
+    /**
+     * Counts the spots held across all buckets of an index, checking each bucket's count of
+     * parked cars against the spots it holds.
+     *
+     * @param index the make or make and model index
+     * @param epoch the current epoch of the slot table
+     * @return the total number of indexed spots, or -1 if a bucket's count is off
+     */
+    private static int countIndexed(Map<String, MakeBucket> index, int epoch) {
+        int count = 0;
+        for (MakeBucket bucket : index.values()) {
+            if (bucket.parkedCount(epoch) != bucket.spots.size()) {
+                return -1; // Only valid once stale cars have been swept
             }
+            count += bucket.spots.size();
         }
+        return count;
     }
 
     /**
      * Gets all parking spots in the car park.
      *
-     * @return a map of all parking spots
+     * @return a read-only live map of all parking spots, iterated in slot order
+     * @see #snapshot()
      */
     public Map<String, ParkingSpot> getSpots() {
-        return spots;
+        return spotTable.asMap();
+    }
+
+    /**
+     * Takes an immutable snapshot of every spot and the car parked in it. Unlike iterating
+     * {@link #getSpots()}, the snapshot is a single moment of the car park, taken without copying
+     * the spots and without holding up other threads while it is read.
+     *
+     * @return the snapshot
+     */
+    public CarParkSnapshot snapshot() {
+        return spotTable.snapshot();
+    }
+
+    /**
+     * Takes a snapshot and runs an action with no other change in between. The journal uses it
+     * to mark the place of a checkpoint among its records.
+     *
+     * @param action run while every change is held up
+     * @return the snapshot, which the action's records follow exactly
+     */
+    CarParkSnapshot snapshotAnd(Runnable action) {
+        lockAll(); // Every change journals its record under its locks
+        try {
+            CarParkSnapshot snapshot = snapshot();
+            action.run();
+            return snapshot;
+        } finally {
+            unlockAll();
+        }
     }
 
     /**
@@ -181,7 +757,7 @@ public class CarPark {
      * @return the total number of spots
      */
     public int getTotalSpots() {
-        return spots.size();
+        return spotTable.size();
     }
 
     /**
@@ -190,13 +766,7 @@ public class CarPark {
      * @return the number of occupied spots
      */
     public int getOccupiedSpots() {
-        int count = 0;
-        for (ParkingSpot spot : spots.values()) {
-            if (spot.isOccupied()) {
-                count++; // Increment count for each occupied spot
-            }
-        }
-        return count;
+        return spotTable.getOccupiedCount();
     }
 
     /**
@@ -207,5 +777,152 @@ public class CarPark {
     public int getUnoccupiedSpots() {
         return getTotalSpots() - getOccupiedSpots();
     }
-}
 
+    /**
+     * The spots of one make, or of one make and model, with a count of the cars in them that are
+     * still parked. Cars cleared by a reset stay in the map until their spot is swept or reused,
+     * but the count belongs to an epoch and drops to zero with the reset, so it never needs a
+     * walk over the spots to stay right.
+     */
+    private static class MakeBucket {
+        private final Map<String, ParkingSpot> spots; // Indexed spots by ID, cleared cars included until swept
+        private final AtomicLong parked = new AtomicLong(); // Epoch in the high half, cars parked in it in the low half
+
+        private MakeBucket(Map<String, ParkingSpot> spots) {
+            this.spots = spots;
+        }
+
+        /**
+         * Adds a spot whose car has just parked.
+         *
+         * @param spot the occupied parking spot
+         * @param epoch the current epoch of the slot table
+         */
+        private void add(ParkingSpot spot, int epoch) {
+            spots.put(spot.getId(), spot);
+            count(epoch, 1);
+        }
+
+        /**
+         * Removes a spot whose car has left or been cleared by a reset.
+         *
+         * @param spot the parking spot
+         * @param parked true if the car was still parked, so it was counted in this epoch
+         * @param epoch the current epoch of the slot table
+         */
+        private void remove(ParkingSpot spot, boolean parked, int epoch) {
+            if (spots.remove(spot.getId()) != null && parked) {
+                count(epoch, -1);
+            }
+        }
+
+        /**
+         * Gets the number of cars in the bucket that are still parked.
+         *
+         * @param epoch the current epoch of the slot table
+         * @return the number of parked cars
+         */
+        private int parkedCount(int epoch) {
+            long state = parked.get();
+            return (int) (state >>> 32) == epoch ? (int) state : 0;
+        }
+
+        /**
+         * Changes the count of parked cars, starting it again from zero in a new epoch.
+         *
+         * @param epoch the current epoch of the slot table
+         * @param delta the change
+         */
+        private void count(int epoch, int delta) {
+            long state;
+            long next;
+            do { // Spots of one make are changed under different stripes
+                state = parked.get();
+                int count = (int) (state >>> 32) == epoch ? (int) state : 0;
+                next = (long) epoch << 32 | (count + delta) & 0xFFFFFFFFL;
+            } while (!parked.compareAndSet(state, next));
+        }
+    }
+
+    /**
+     * Read-only view of an index bucket that hides spots whose car has been removed by a reset
+     * but not yet swept from the bucket. Its size is the bucket's count of parked cars, so it
+     * costs nothing however many cleared cars the bucket still holds.
+     */
+    private static class ParkedSpotsView extends AbstractMap<String, ParkingSpot> {
+        private final MakeBucket bucket; // The live index bucket
+        private final SpotSlotTable table; // Source of the current epoch
+
+        private ParkedSpotsView(MakeBucket bucket, SpotSlotTable table) {
+            this.bucket = bucket;
+            this.table = table;
+        }
+
+        @Override
+        public ParkingSpot get(Object key) {
+            ParkingSpot spot = bucket.spots.get(key);
+            return spot != null && spot.isOccupied() ? spot : null;
+        }
+
+        @Override
+        public int size() {
+            return bucket.parkedCount(table.getEpoch());
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Map.Entry<String, ParkingSpot>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<String, ParkingSpot>> iterator() {
+                    if (ParkedSpotsView.this.isEmpty()) {
+                        return Collections.emptyIterator(); // Everything left in the bucket was cleared by a reset
+                    }
+                    Iterator<ParkingSpot> spots = bucket.spots.values().iterator();
+                    return new Iterator<>() {
+                        private ParkingSpot next = advance(); // Next parked spot, null when done
+
+                        @Override
+                        public boolean hasNext() {
+                            return next != null;
+                        }
+
+                        @Override
+                        public Map.Entry<String, ParkingSpot> next() {
+                            if (next == null) {
+                                throw new NoSuchElementException();
+                            }
+                            ParkingSpot spot = next;
+                            next = advance();
+                            return new AbstractMap.SimpleImmutableEntry<>(spot.getId(), spot);
+                        }
+
+                        private ParkingSpot advance() {
+                            while (spots.hasNext()) {
+                                ParkingSpot spot = spots.next();
+                                if (spot.isOccupied()) {
+                                    return spot;
+                                }
+                            }
+                            return null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return ParkedSpotsView.this.size();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+/**
+ * Describes one change to a car park, as reported to a {@link CarParkListener}.
+ */
+public class CarParkEvent {
+    /**
+     * The kinds of change a car park reports.
+     */
+    public enum Type {
+        PARKED, // A car was parked in a spot
+        REMOVED, // A car left a spot
+        ADDED, // A spot was added
+        DELETED, // A spot was deleted
+        RESET // The car park was reset
+    }
+
+    private final Type type; // What changed
+    private final String spotId; // Spot that changed, null for a reset
+    private final Car car; // Car that was parked or removed, null for other changes
+
+    /**
+     * Constructs a CarParkEvent.
+     *
+     * @param type the kind of change
+     * @param spotId the ID of the spot that changed, null for a reset
+     * @param car the car that was parked or removed, null for other changes
+     */
+    public CarParkEvent(Type type, String spotId, Car car) {
+        this.type = type;
+        this.spotId = spotId;
+        this.car = car;
+    }
+
+    /**
+     * Gets the kind of change.
+     *
+     * @return the event type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the ID of the spot that changed.
+     *
+     * @return the spot ID, null for a reset
+     */
+    public String getSpotId() {
+        return spotId;
+    }
+
+    /**
+     * Gets the car that was parked or removed.
+     *
+     * @return the car, null unless the event is PARKED or REMOVED
+     */
+    public Car getCar() {
+        return car;
+    }
+
+    @Override
+    public String toString() {
+        return type + (spotId == null ? "" : " " + spotId) + (car == null ? "" : " " + car.getRegistrationNumber());
+    }
+}
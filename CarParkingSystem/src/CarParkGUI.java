@@ -9,32 +9,55 @@ import java.awt.Font;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 import javax.swing.JButton;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 
 /**
  * Represents the GUI application for managing a car park.
+ * <p>
+ * Car park operations run on a background thread, one at a time in the order they were
+ * started, so the window keeps responding while a long one such as a reset is running.
  */
-public class CarParkGUI extends JFrame {
-    private JPanel parkingPanel; // Panel for displaying parking spots
-    private CarPark carPark; // Car park management system
-    private Map<String, JButton> spotButtons; // Map of spot buttons by their IDs
+public final class CarParkGUI extends JFrame {
+    private static final Duration MAX_STAY = Duration.ofHours(3); // Longest stay before an overstay alert
+
+    private SpotGridPanel spotGrid; // Grid drawing every parking spot
+    private CarPark carPark; // Car park management system, shared with the background thread
+    private ExecutorService modelExecutor; // Runs car park operations off the Event Dispatch Thread
+    private JLabel statusLabel; // Shows the operation in progress
+    private JProgressBar progressBar; // Shows how far a long operation has got
+    private int pendingOperations; // Operations started but not finished, only used on the EDT
 
     /**
      * Constructs the CarParkGUI.
      */
     public CarParkGUI() {
-        carPark = new CarPark();
-        spotButtons = new HashMap<>();
+        carPark = new CarPark(true); // Changed on the background thread while the grid reads it
+        modelExecutor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "car-park-operations");
+            thread.setDaemon(true); // Must not keep the program alive after the window closes
+            return thread;
+        });
 
         setTitle("Parking Spot System");
         setSize(1000, 600);
@@ -51,13 +74,13 @@ public class CarParkGUI extends JFrame {
 
         // Left panel with control buttons
         JPanel controlPanel = new JPanel();
-        controlPanel.setLayout(new GridLayout(9, 1, 10, 10));
+        controlPanel.setLayout(new GridLayout(11, 1, 10, 10));
         controlPanel.setBackground(Color.DARK_GRAY);
 
         String[] buttonLabels = {
             "1. Add a parking spot", "2. Delete a parking spot", "3. List all parking spots",
             "4. Park a car", "5. Find car by registration number", "6. Remove car by registration number",
-            "7. Find cars by make", "8. Reset car park", "9. Exit"
+            "7. Find cars by make", "8. Reset car park", "9. Import spots", "10. Export spots", "11. Exit"
         };
         JButton[] controlButtons = new JButton[buttonLabels.length];
         for (int i = 0; i < buttonLabels.length; i++) {
@@ -78,88 +101,133 @@ public class CarParkGUI extends JFrame {
         controlButtons[5].addActionListener(new RemoveCarButtonListener());
         controlButtons[6].addActionListener(new FindCarsByMakeButtonListener());
         controlButtons[7].addActionListener(new ResetCarParkButtonListener());
-        controlButtons[8].addActionListener(e -> {
+        controlButtons[8].addActionListener(new ImportSpotsButtonListener());
+        controlButtons[9].addActionListener(new ExportSpotsButtonListener());
+        controlButtons[10].addActionListener(e -> {
             JOptionPane.showMessageDialog(null, "Program ends!");
             System.exit(0);
         });
 
-        // Parking panel for displaying parking spots
-        parkingPanel = new JPanel();
-        parkingPanel.setLayout(new GridLayout(3, 5, 10, 10));
-        parkingPanel.setBackground(Color.BLUE);
-
-        for (String spotId : carPark.getSpots().keySet()) {
-            JButton spotButton = new JButton("<html>" + spotId + "<br>Vacant</html>");
-            spotButton.setName(spotId);
-            spotButton.setBackground(Color.LIGHT_GRAY);
-            spotButton.addActionListener(new SpotInteractionListener());
-            parkingPanel.add(spotButton);
-            spotButtons.put(spotId, spotButton);
-        }
+        // Grid for displaying parking spots, scrolled when it outgrows the window
+        spotGrid = new SpotGridPanel(carPark, this::spotClicked);
+        carPark.addCarParkListener(new CoalescingDispatcher(this::carParkChanged)); // The grid follows every change
+        JScrollPane parkingScroll = new JScrollPane(spotGrid);
+        parkingScroll.getViewport().setBackground(Color.BLUE);
+
+        // Zoom controls under the grid, Ctrl + mouse wheel also zooms
+        JPanel zoomPanel = new JPanel();
+        zoomPanel.setBackground(Color.DARK_GRAY);
+        JButton zoomOutButton = new JButton("Zoom out");
+        JButton zoomInButton = new JButton("Zoom in");
+        zoomOutButton.addActionListener(e -> spotGrid.setZoom(spotGrid.getZoom() / 1.25));
+        zoomInButton.addActionListener(e -> spotGrid.setZoom(spotGrid.getZoom() * 1.25));
+        zoomPanel.add(zoomOutButton);
+        zoomPanel.add(zoomInButton);
+
+        JPanel parkingPanel = new JPanel(new BorderLayout());
+        parkingPanel.add(parkingScroll, BorderLayout.CENTER);
+        parkingPanel.add(zoomPanel, BorderLayout.SOUTH);
+
+        // Status bar showing operations in progress
+        JPanel statusPanel = new JPanel(new BorderLayout(10, 0));
+        statusPanel.setBackground(Color.DARK_GRAY);
+        statusLabel = new JLabel("Ready");
+        statusLabel.setForeground(Color.WHITE);
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        statusPanel.add(statusLabel, BorderLayout.CENTER);
+        statusPanel.add(progressBar, BorderLayout.EAST);
+
+        // Overstay alerts go to the status bar
+        OverstayMonitor overstayMonitor = new OverstayMonitor(carPark, MAX_STAY, (spotId, car) ->
+                SwingUtilities.invokeLater(() -> statusLabel.setText("Car " + car.getRegistrationNumber() + " in spot "
+                        + spotId + " has stayed over " + MAX_STAY.toHours() + " hours")));
+        overstayMonitor.start();
 
         add(titlePanel, BorderLayout.NORTH);
         add(controlPanel, BorderLayout.WEST);
         add(parkingPanel, BorderLayout.CENTER);
+        add(statusPanel, BorderLayout.SOUTH);
 
         setVisible(true);
     }
 
     /**
-     * Listener for handling interactions with parking spots.
+     * Updates the grid with a frame's worth of changes to the car park. Runs on the Event Dispatch Thread.
+     *
+     * @param changes the spots added, deleted and changed since the last update
      */
-    private class SpotInteractionListener implements ActionListener {
-        @Override
-        public void actionPerformed(ActionEvent e) {
-            JButton source = (JButton) e.getSource();
-            String spotId = source.getName();
-            ParkingSpot spot = carPark.findSpot(spotId);
-            if (spot.isOccupied()) {
-                int option = JOptionPane.showConfirmDialog(null, "Do you want to remove the car from spot " + spotId + "?", "Remove Car", JOptionPane.YES_NO_OPTION);
-                if (option == JOptionPane.YES_OPTION) {
-                    carPark.removeCarBySpot(spotId);
-                    source.setText("<html>" + spotId + "<br>Vacant</html>");
-                    source.setBackground(Color.LIGHT_GRAY);
-                }
-            } else {
-                String regNumber = showInputDialog("Enter car registration number (e.g., A1234):");
-                if (regNumber == null || !regNumber.matches("[A-Z]\\d{4}")) {
-                    if (regNumber != null) {
-                        JOptionPane.showMessageDialog(null, "Invalid registration number format. Must be an uppercase letter followed by 4 digits.");
-                    }
-                    return;
-                }
-                if (carPark.isCarInPark(regNumber)) {
-                    JOptionPane.showMessageDialog(null, "A car with this registration number is already parked.");
-                    return;
+    private void carParkChanged(CoalescingDispatcher.Changes changes) {
+        for (String spotId : changes.getDeleted()) {
+            spotGrid.removeSpot(spotId);
+        }
+        for (String spotId : changes.getAdded()) {
+            spotGrid.addSpot(spotId);
+        }
+        if (changes.isReset()) {
+            spotGrid.repaint(); // Any spot may have changed
+        } else {
+            for (String spotId : changes.getChanged()) {
+                spotGrid.spotChanged(spotId);
+            }
+        }
+    }
+
+    /**
+     * Handles a click on a parking spot in the grid.
+     *
+     * @param spotId the ID of the clicked spot
+     */
+    private void spotClicked(String spotId) {
+        ParkingSpot spot = carPark.findSpot(spotId);
+        if (spot == null) {
+            return; // Deleted since the grid was last painted
+        }
+        if (spot.isOccupied()) {
+            int option = JOptionPane.showConfirmDialog(null, "Do you want to remove the car from spot " + spotId + "?", "Remove Car", JOptionPane.YES_NO_OPTION);
+            if (option == JOptionPane.YES_OPTION) {
+                runInBackground("Removing car from spot " + spotId, progress -> carPark.removeCarBySpot(spotId), removed -> { });
+            }
+        } else {
+            String regNumber = showInputDialog("Enter car registration number (e.g., A1234):");
+            if (regNumber == null || !regNumber.matches("[A-Z]\\d{4}")) {
+                if (regNumber != null) {
+                    JOptionPane.showMessageDialog(null, "Invalid registration number format. Must be an uppercase letter followed by 4 digits.");
                 }
-                String make = showInputDialog("Enter car make:");
-                if (make == null) return;
-                String model = showInputDialog("Enter car model:");
-                if (model == null) return;
-                String yearStr = showInputDialog("Enter car year (2004-2024):");
-                if (yearStr == null) return;
-                int year;
-                try {
-                    year = Integer.parseInt(yearStr);
-                    if (year < 2004 || year > 2024) {
-                        JOptionPane.showMessageDialog(null, "Invalid year. Must be between 2004 and 2024.");
-                        return;
-                    }
-                } catch (NumberFormatException ex) {
-                    JOptionPane.showMessageDialog(null, "Invalid year. Must be a number between 2004 and 2024.");
+                return;
+            }
+            if (carPark.isCarInPark(regNumber)) {
+                JOptionPane.showMessageDialog(null, "A car with this registration number is already parked.");
+                return;
+            }
+            String make = showInputDialog("Enter car make:");
+            if (make == null) return;
+            String model = showInputDialog("Enter car model:");
+            if (model == null) return;
+            String yearStr = showInputDialog("Enter car year (2004-2024):");
+            if (yearStr == null) return;
+            int year;
+            try {
+                year = Integer.parseInt(yearStr);
+                if (year < 2004 || year > 2024) {
+                    JOptionPane.showMessageDialog(null, "Invalid year. Must be between 2004 and 2024.");
                     return;
                 }
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(null, "Invalid year. Must be a number between 2004 and 2024.");
+                return;
+            }
 
-                Car car = new Car(regNumber, make, model, year);
+            Car car = new Car(regNumber, make, model, year);
 
-                if (carPark.parkCar(spotId, car)) {
-                    source.setBackground(Color.YELLOW);
-                    source.setText("<html>" + spotId + "<br>Registration: " + regNumber + "<br>" + make + " " + year + "</html>");
+            runInBackground("Parking car in spot " + spotId, progress -> carPark.parkCar(spotId, car), parked -> {
+                if (parked) {
                     JOptionPane.showMessageDialog(null, "Car parked in spot " + spotId);
                 } else {
                     JOptionPane.showMessageDialog(null, "Failed to park car. Spot might be occupied or does not exist.");
                 }
-            }
+            });
         }
     }
 
@@ -176,19 +244,13 @@ public class CarParkGUI extends JFrame {
                 }
                 return;
             }
-            if (carPark.addSpot(spotId)) {
-                JButton spotButton = new JButton("<html>" + spotId + "<br>Vacant</html>");
-                spotButton.setName(spotId);
-                spotButton.setBackground(Color.LIGHT_GRAY);
-                spotButton.addActionListener(new SpotInteractionListener());
-                parkingPanel.add(spotButton);
-                spotButtons.put(spotId, spotButton);
-                parkingPanel.revalidate();
-                parkingPanel.repaint();
-                JOptionPane.showMessageDialog(null, "New spot " + spotId + " added.");
-            } else {
-                JOptionPane.showMessageDialog(null, "Spot " + spotId + " already exists.");
-            }
+            runInBackground("Adding spot " + spotId, progress -> carPark.addSpot(spotId), added -> {
+                if (added) {
+                    JOptionPane.showMessageDialog(null, "New spot " + spotId + " added.");
+                } else {
+                    JOptionPane.showMessageDialog(null, "Spot " + spotId + " already exists.");
+                }
+            });
         }
     }
 
@@ -205,15 +267,13 @@ public class CarParkGUI extends JFrame {
                 }
                 return;
             }
-            if (carPark.deleteSpot(spotId)) {
-                JButton spotButton = spotButtons.remove(spotId);
-                parkingPanel.remove(spotButton);
-                parkingPanel.revalidate();
-                parkingPanel.repaint();
-                JOptionPane.showMessageDialog(null, "Spot " + spotId + " deleted.");
-            } else {
-                JOptionPane.showMessageDialog(null, "Failed to delete spot. Spot might be occupied or does not exist.");
-            }
+            runInBackground("Deleting spot " + spotId, progress -> carPark.deleteSpot(spotId), deleted -> {
+                if (deleted) {
+                    JOptionPane.showMessageDialog(null, "Spot " + spotId + " deleted.");
+                } else {
+                    JOptionPane.showMessageDialog(null, "Failed to delete spot. Spot might be occupied or does not exist.");
+                }
+            });
         }
     }
 
@@ -223,25 +283,8 @@ public class CarParkGUI extends JFrame {
     private class ListSpotsButtonListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            StringBuilder sb = new StringBuilder("List of Parking Spots\n--------------------\n");
-            for (ParkingSpot spot : carPark.getSpots().values()) {
-                sb.append("Spot ").append(spot.getId())
-                        .append(": ").append(spot.isOccupied() ? "Occupied by " + spot.getCar().getRegistrationNumber() + " (" + spot.getCar().getMake() + ")" : "Vacant")
-                        .append("\n");
-                if (spot.isOccupied()) {
-                    Duration duration = Duration.between(spot.getCar().getParkingTime(), LocalDateTime.now());
-                    long hours = duration.toHours();
-                    long minutes = duration.toMinutes() % 60;
-                    long seconds = duration.getSeconds() % 60;
-                    sb.append("  Parking time: ").append(hours).append(" hours ")
-                            .append(minutes).append(" minutes ").append(seconds).append(" seconds\n");
-                }
-            }
-            sb.append("\nSummary\n--------------------\n")
-                    .append("Total spots: ").append(carPark.getTotalSpots()).append("\n")
-                    .append("Occupied spots: ").append(carPark.getOccupiedSpots()).append("\n")
-                    .append("Available spots: ").append(carPark.getUnoccupiedSpots()).append("\n");
-            JOptionPane.showMessageDialog(null, sb.toString());
+            // A snapshot costs a pointer per 64 spots, the dialog then only shows the rows in view and follows changes
+            new SpotListDialog(CarParkGUI.this, carPark).setVisible(true);
         }
     }
 
@@ -289,14 +332,13 @@ public class CarParkGUI extends JFrame {
 
             Car car = new Car(regNumber, make, model, year);
 
-            if (carPark.parkCar(spotId, car)) {
-                JButton spotButton = spotButtons.get(spotId);
-                spotButton.setBackground(Color.YELLOW);
-                spotButton.setText("<html>" + spotId + "<br>Registration: " + regNumber + "<br>" + make + " " + year + "</html>");
-                JOptionPane.showMessageDialog(null, "Car parked in spot " + spotId);
-            } else {
-                JOptionPane.showMessageDialog(null, "Failed to park car. Spot might be occupied or does not exist.");
-            }
+            runInBackground("Parking car in spot " + spotId, progress -> carPark.parkCar(spotId, car), parked -> {
+                if (parked) {
+                    JOptionPane.showMessageDialog(null, "Car parked in spot " + spotId);
+                } else {
+                    JOptionPane.showMessageDialog(null, "Failed to park car. Spot might be occupied or does not exist.");
+                }
+            });
         }
     }
 
@@ -313,16 +355,18 @@ public class CarParkGUI extends JFrame {
                 }
                 return;
             }
-            ParkingSpot spot = carPark.findCarByRegNumber(regNumber);
-            if (spot != null) {
-                Duration duration = Duration.between(spot.getCar().getParkingTime(), LocalDateTime.now());
+            runInBackground("Finding car " + regNumber, progress -> {
+                ParkingSpot spot = carPark.findCarByRegNumber(regNumber);
+                Car car = spot == null ? null : spot.getCar(); // Read once, the car may leave meanwhile
+                if (car == null) {
+                    return "Car with registration number " + regNumber + " not found.";
+                }
+                Duration duration = Duration.between(car.getParkingTime(), LocalDateTime.now());
                 long hours = duration.toHours();
                 long minutes = duration.toMinutes() % 60;
                 long seconds = duration.getSeconds() % 60;
-                JOptionPane.showMessageDialog(null, "Car with registration number " + regNumber + " found in spot: " + spot.getId() + "\nParking time: " + hours + " hours " + minutes + " minutes " + seconds + " seconds");
-            } else {
-                JOptionPane.showMessageDialog(null, "Car with registration number " + regNumber + " not found.");
-            }
+                return "Car with registration number " + regNumber + " found in spot: " + spot.getId() + "\nParking time: " + hours + " hours " + minutes + " minutes " + seconds + " seconds";
+            }, message -> JOptionPane.showMessageDialog(null, message));
         }
     }
 
@@ -339,17 +383,13 @@ public class CarParkGUI extends JFrame {
                 }
                 return;
             }
-            if (carPark.removeCarByRegNumber(regNumber)) {
-                for (JButton button : spotButtons.values()) {
-                    if (button.getText().contains(regNumber)) {
-                        button.setBackground(Color.LIGHT_GRAY);
-                        button.setText("<html>" + button.getName() + "<br>Vacant</html>");
-                    }
+            runInBackground("Removing car " + regNumber, progress -> carPark.removeCarByRegNumber(regNumber), removed -> {
+                if (removed) {
+                    JOptionPane.showMessageDialog(null, "Car with registration number " + regNumber + " removed.");
+                } else {
+                    JOptionPane.showMessageDialog(null, "Car with registration number " + regNumber + " not found.");
                 }
-                JOptionPane.showMessageDialog(null, "Car with registration number " + regNumber + " removed.");
-            } else {
-                JOptionPane.showMessageDialog(null, "Car with registration number " + regNumber + " not found.");
-            }
+            });
         }
     }
 
@@ -361,12 +401,17 @@ public class CarParkGUI extends JFrame {
         public void actionPerformed(ActionEvent e) {
             String make = showInputDialog("Enter car make to find:");
             if (make == null) return;
-            Map<String, ParkingSpot> foundCars = carPark.findCarsByMake(make);
-            if (!foundCars.isEmpty()) {
+            runInBackground("Finding cars by make " + make, progress -> {
+                Map<String, ParkingSpot> foundCars = carPark.findCarsByMake(make);
                 StringBuilder sb = new StringBuilder("Cars with make " + make + ":\n");
+                int found = 0;
                 for (Map.Entry<String, ParkingSpot> entry : foundCars.entrySet()) {
                     ParkingSpot spot = entry.getValue();
                     Car car = spot.getCar();
+                    if (car == null) {
+                        continue; // Left after the lookup
+                    }
+                    found++;
                     Duration duration = Duration.between(car.getParkingTime(), LocalDateTime.now());
                     long hours = duration.toHours();
                     long minutes = duration.toMinutes() % 60;
@@ -379,10 +424,8 @@ public class CarParkGUI extends JFrame {
                             .append("  Parking time: ").append(hours).append(" hours ")
                             .append(minutes).append(" minutes ").append(seconds).append(" seconds\n\n");
                 }
-                JOptionPane.showMessageDialog(null, sb.toString());
-            } else {
-                JOptionPane.showMessageDialog(null, "No cars with make " + make + " found.");
-            }
+                return found > 0 ? sb.toString() : "No cars with make " + make + " found.";
+            }, message -> JOptionPane.showMessageDialog(null, message));
         }
     }
 
@@ -392,15 +435,127 @@ public class CarParkGUI extends JFrame {
     private class ResetCarParkButtonListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            carPark.resetCarPark();
-            for (JButton button : spotButtons.values()) {
-                button.setBackground(Color.LIGHT_GRAY);
-                button.setText("<html>" + button.getName() + "<br>Vacant</html>");
+            runInBackground("Resetting car park", progress -> {
+                carPark.resetCarPark(); // Constant time, the grid repaints once on the reset event
+                return null;
+            }, ignored -> JOptionPane.showMessageDialog(null, "Car park has been reset. All cars removed."));
+        }
+    }
+
+    /**
+     * Listener for importing spots and parked cars from a CSV or binary snapshot file.
+     */
+    private class ImportSpotsButtonListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(CarParkGUI.this) != JFileChooser.APPROVE_OPTION) {
+                return;
             }
-            JOptionPane.showMessageDialog(null, "Car park has been reset. All cars removed.");
+            Path file = chooser.getSelectedFile().toPath();
+            runInBackground("Importing spots from " + file.getFileName(), progress -> {
+                try {
+                    return isCsv(file) ? SpotTransfer.importCsv(carPark, file, progress)
+                            : SpotTransfer.importSnapshot(carPark, file, progress);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }, added -> JOptionPane.showMessageDialog(null, added + " spots imported."));
         }
     }
 
+    /**
+     * Listener for exporting every spot and parked car to a CSV or binary snapshot file.
+     */
+    private class ExportSpotsButtonListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showSaveDialog(CarParkGUI.this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            Path file = chooser.getSelectedFile().toPath();
+            runInBackground("Exporting spots to " + file.getFileName(), progress -> {
+                try {
+                    if (isCsv(file)) {
+                        return SpotTransfer.exportCsv(carPark, file);
+                    }
+                    carPark.writeSnapshot(file);
+                    return (long) carPark.getTotalSpots();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }, written -> JOptionPane.showMessageDialog(null, written + " spots exported to " + file.getFileName() + "."));
+        }
+    }
+
+    /**
+     * Checks whether a file is CSV by its name; any other file is a binary snapshot.
+     *
+     * @param file the file
+     * @return true if the file name ends in .csv
+     */
+    private static boolean isCsv(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+    }
+
+    /**
+     * Runs a car park operation on the background thread and hands its result to the Event Dispatch Thread.
+     * The status bar shows the operation while it runs, with its progress if it reports any.
+     *
+     * @param description what the operation does, shown in the status bar
+     * @param operation the car park work, given a listener for its progress
+     * @param onDone called on the Event Dispatch Thread with the result
+     */
+    private <T> void runInBackground(String description, ModelOperation<T> operation, Consumer<T> onDone) {
+        SwingWorker<T, Void> worker = new SwingWorker<>() {
+            @Override
+            protected T doInBackground() {
+                return operation.run((done, total) -> setProgress(total <= 0 ? 100 : (int) Math.min(100, done * 100 / total)));
+            }
+
+            @Override
+            protected void done() {
+                if (--pendingOperations == 0) {
+                    statusLabel.setText("Ready");
+                    progressBar.setVisible(false);
+                }
+                try {
+                    onDone.accept(get());
+                } catch (ExecutionException ex) {
+                    JOptionPane.showMessageDialog(null, description + " failed: " + ex.getCause().getMessage());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        worker.addPropertyChangeListener(e -> {
+            if ("state".equals(e.getPropertyName()) && e.getNewValue() == SwingWorker.StateValue.STARTED) {
+                statusLabel.setText(description + "...");
+                progressBar.setIndeterminate(true); // Until the operation reports progress
+                progressBar.setVisible(true);
+            } else if ("progress".equals(e.getPropertyName())) {
+                progressBar.setIndeterminate(false);
+                progressBar.setValue((Integer) e.getNewValue());
+            }
+        });
+        pendingOperations++;
+        modelExecutor.execute(worker);
+    }
+
+    /**
+     * Car park work run off the Event Dispatch Thread.
+     */
+    private interface ModelOperation<T> {
+        /**
+         * Does the work.
+         *
+         * @param progress told how far the work has got, if it is long enough to be worth reporting
+         * @return the result to hand back to the Event Dispatch Thread
+         */
+        T run(ProgressListener progress);
+    }
+
     /**
      * Shows an input dialog with the specified message.
      *
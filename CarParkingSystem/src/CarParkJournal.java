@@ -0,0 +1,613 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+import util.SpotSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of the changes made to a car park.
+ * <p>
+ * Records are encoded on the calling thread and handed to a background writer, which writes
+ * everything queued since its last pass in one batch (group commit) and forces it to disk as
+ * the fsync policy asks. Only {@link FsyncPolicy#ON_COMMIT} makes callers wait, and then only
+ * after the car park has released its locks. Each record carries its length and a CRC32, so a
+ * record torn by a crash is detected on replay and cut off.
+ * <p>
+ * Left alone the journal grows with every change, and so does the time to replay it.
+ * {@link #checkpoint()} bounds both: it writes a snapshot of the car park beside the journal
+ * and drops the records the snapshot already holds, so opening the journal loads the snapshot
+ * and replays only the tail.
+ */
+public class CarParkJournal implements AutoCloseable {
+    /**
+     * When the journal forces written records to disk.
+     */
+    public enum FsyncPolicy {
+        NEVER, // Leave flushing to the operating system; fastest, may lose recent changes on power loss
+        PERIODIC, // Force at most once per sync interval; callers never wait
+        ON_COMMIT // Callers wait until their record has been forced; batches share one fsync
+    }
+
+    // Record types
+    private static final byte ADD_SPOT = 1;
+    private static final byte DELETE_SPOT = 2;
+    private static final byte PARK = 3;
+    private static final byte REMOVE = 4;
+    private static final byte RESET = 5;
+    private static final byte CHECKPOINT = 6;
+
+    private static final int HEADER_BYTES = 8; // Payload length and CRC32 of the payload
+    private static final long DEFAULT_SYNC_INTERVAL_MILLIS = 50;
+
+    private final Path file;
+    private final CarPark carPark;
+    private final FsyncPolicy policy;
+    private final long syncIntervalMillis;
+    private final Thread writer;
+    private final Object channelLock = new Object(); // Held while writing, so a checkpoint can swap the file
+    private final Object checkpointLock = new Object(); // One checkpoint at a time
+
+    private FileChannel channel; // Guarded by channelLock
+    private long checkpointId; // Checkpoint the file starts from, 0 for an empty car park; guarded by checkpointLock
+
+    // Guarded by this
+    private List<byte[]> pending = new ArrayList<>(); // Encoded records not yet handed to the writer
+    private long appendedBytes; // Length of the file once every appended record is written
+    private long appendedSeq; // Sequence number of the last appended record
+    private long durableSeq; // Sequence number of the last record written (and forced, if the policy says so)
+    private IOException failure; // First write error, after which the journal refuses more work
+    private boolean closed;
+
+    /**
+     * Constructs a journal writing to an open channel positioned at its end.
+     *
+     * @param file the journal file
+     * @param channel the journal file channel
+     * @param checkpointId the checkpoint the file starts from, or 0
+     * @param carPark the car park the journal records
+     * @param policy when to force records to disk
+     * @param syncIntervalMillis the longest time between forces under the PERIODIC policy
+     * @throws IOException if the channel's position cannot be read
+     */
+    private CarParkJournal(Path file, FileChannel channel, long checkpointId, CarPark carPark, FsyncPolicy policy,
+                           long syncIntervalMillis) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.checkpointId = checkpointId;
+        this.carPark = carPark;
+        this.policy = policy;
+        this.syncIntervalMillis = syncIntervalMillis;
+        appendedBytes = channel.position();
+        writer = new Thread(this::writeLoop, "car-park-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Opens a journal file with the default sync interval, replays it into a car park and attaches it.
+     *
+     * @param file the journal file, created if missing
+     * @param policy when to force records to disk
+     * @param carPark an empty car park to restore the journaled state into
+     * @return the open journal
+     * @throws IOException if the file cannot be read or opened
+     */
+    public static CarParkJournal open(Path file, FsyncPolicy policy, CarPark carPark) throws IOException {
+        return open(file, policy, DEFAULT_SYNC_INTERVAL_MILLIS, carPark);
+    }
+
+    /**
+     * Opens a journal file, replays it into a car park and attaches it, so that every later
+     * change to the car park is journaled. A torn record at the end of the file is cut off.
+     * If the journal has been checkpointed, the latest checkpoint snapshot is loaded first and
+     * only the records after it are replayed.
+     *
+     * @param file the journal file, created if missing
+     * @param policy when to force records to disk
+     * @param syncIntervalMillis the longest time between forces under the PERIODIC policy
+     * @param carPark an empty car park to restore the journaled state into
+     * @return the open journal
+     * @throws IOException if the file cannot be read or opened
+     */
+    public static CarParkJournal open(Path file, FsyncPolicy policy, long syncIntervalMillis, CarPark carPark) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        CarParkJournal journal;
+        try {
+            List<long[]> checkpoints = new ArrayList<>(); // Checkpoint ID and offset of each checkpoint record
+            long validLength = read(channel, 0, (offset, payload) -> {
+                if (payload[0] == CHECKPOINT) {
+                    checkpoints.add(new long[] {ByteBuffer.wrap(payload, 1, 8).getLong(), offset});
+                }
+            });
+            int latest = checkpoints.size() - 1; // A crash may have cut a checkpoint short of its snapshot
+            while (latest >= 0 && !Files.exists(checkpointFile(file, checkpoints.get(latest)[0]))) {
+                latest--;
+            }
+            long start = 0;
+            long checkpointId = 0;
+            if (latest >= 0) {
+                checkpointId = checkpoints.get(latest)[0];
+                start = checkpoints.get(latest)[1];
+                try (SpotSnapshot snapshot = SpotSnapshot.open(checkpointFile(file, checkpointId))) {
+                    carPark.restore(snapshot);
+                }
+            } else if (!checkpoints.isEmpty() && checkpoints.get(0)[1] == 0) {
+                throw new IOException("Journal starts from a missing checkpoint " + checkpointFile(file, checkpoints.get(0)[0]));
+            }
+            read(channel, start, (offset, payload) -> apply(payload, carPark));
+            channel.truncate(validLength); // Drop a torn tail so new records follow the last good one
+            channel.position(validLength);
+            deleteCheckpointsOtherThan(file, checkpointId);
+            journal = new CarParkJournal(file, channel, checkpointId, carPark, policy, syncIntervalMillis);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        carPark.attachJournal(journal);
+        return journal;
+    }
+
+    /**
+     * Deletes the snapshot files of every checkpoint but the one the journal starts from. A crash
+     * during {@link #checkpoint()} leaves the previous checkpoint's snapshot behind once the
+     * journal no longer mentions it, or a new snapshot whose record never reached the journal.
+     *
+     * @param file the journal file
+     * @param checkpointId the checkpoint the journal starts from, or 0 to delete them all
+     * @throws IOException if the directory cannot be listed or a file cannot be deleted
+     */
+    private static void deleteCheckpointsOtherThan(Path file, long checkpointId) throws IOException {
+        String prefix = file.getFileName() + ".";
+        String suffix = ".snapshot";
+        List<Path> orphans = new ArrayList<>();
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(file.toAbsolutePath().getParent(),
+                prefix + "*" + suffix)) {
+            for (Path sibling : siblings) {
+                String name = sibling.getFileName().toString();
+                String id = name.substring(prefix.length(), name.length() - suffix.length());
+                if (id.matches("[0-9a-f]{1,16}") && Long.parseUnsignedLong(id, 16) != checkpointId) {
+                    orphans.add(sibling);
+                }
+            }
+        }
+        for (Path orphan : orphans) {
+            Files.deleteIfExists(orphan);
+        }
+    }
+
+    /**
+     * Gets the snapshot file of a checkpoint, which sits beside the journal file.
+     *
+     * @param file the journal file
+     * @param checkpointId the checkpoint ID
+     * @return the snapshot file
+     */
+    private static Path checkpointFile(Path file, long checkpointId) {
+        return file.resolveSibling(file.getFileName() + "." + Long.toHexString(checkpointId) + ".snapshot");
+    }
+
+    /**
+     * Reads every intact record in the channel from an offset on, stopping at the first torn one.
+     *
+     * @param channel the journal file channel
+     * @param from the offset of the first record to read
+     * @param visitor given the offset and payload of each record
+     * @return the length of the journal up to the end of the last intact record
+     * @throws IOException if the file cannot be read or a record cannot be applied
+     */
+    private static long read(FileChannel channel, long from, RecordVisitor visitor) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(from)), 1 << 16));
+        long size = channel.size();
+        long offset = from;
+        byte[] header = new byte[HEADER_BYTES];
+        while (offset + HEADER_BYTES <= size) {
+            in.readFully(header);
+            ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+            int length = headerBuffer.getInt();
+            int crc = headerBuffer.getInt();
+            if (length <= 0 || offset + HEADER_BYTES + length > size) {
+                break; // Torn or garbled header
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            if (crc != checksum(payload)) {
+                break; // Torn or garbled payload
+            }
+            visitor.visit(offset, payload);
+            offset += HEADER_BYTES + length;
+        }
+        return offset;
+    }
+
+    /**
+     * Applies one record to a car park.
+     *
+     * @param payload the record payload
+     * @param carPark the car park to apply the record to
+     * @throws IOException if the payload cannot be decoded
+     */
+    private static void apply(byte[] payload, CarPark carPark) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        switch (type) {
+            case ADD_SPOT -> carPark.addSpot(in.readUTF());
+            case DELETE_SPOT -> carPark.deleteSpot(in.readUTF());
+            case PARK -> {
+                String spotId = in.readUTF();
+                Car car = new Car(in.readUTF(), in.readUTF(), in.readUTF(), in.readInt(), LocalDateTime.parse(in.readUTF()));
+                carPark.parkCar(spotId, car);
+            }
+            case REMOVE -> carPark.removeCarBySpot(in.readUTF());
+            case RESET -> carPark.resetCarPark();
+            case CHECKPOINT -> {
+                // Replay starts at the checkpoint whose snapshot was loaded; older ones have nothing to add
+            }
+            default -> throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * Journals the addition of a spot.
+     *
+     * @param spotId the ID of the new spot
+     * @return the sequence number of the record
+     */
+    long addSpot(String spotId) {
+        return append(encode(ADD_SPOT, spotId));
+    }
+
+    /**
+     * Journals the deletion of a spot.
+     *
+     * @param spotId the ID of the deleted spot
+     * @return the sequence number of the record
+     */
+    long deleteSpot(String spotId) {
+        return append(encode(DELETE_SPOT, spotId));
+    }
+
+    /**
+     * Journals a car being parked.
+     *
+     * @param spotId the ID of the spot
+     * @param car the parked car
+     * @return the sequence number of the record
+     */
+    long park(String spotId, Car car) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(PARK);
+            out.writeUTF(spotId);
+            out.writeUTF(car.getRegistrationNumber());
+            out.writeUTF(car.getMake());
+            out.writeUTF(car.getModel());
+            out.writeInt(car.getYear());
+            out.writeUTF(car.getParkingTime().toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Cannot happen for an in-memory stream
+        }
+        return append(bytes.toByteArray());
+    }
+
+    /**
+     * Journals a car being removed from a spot.
+     *
+     * @param spotId the ID of the vacated spot
+     * @return the sequence number of the record
+     */
+    long remove(String spotId) {
+        return append(encode(REMOVE, spotId));
+    }
+
+    /**
+     * Journals a reset of the whole car park.
+     *
+     * @return the sequence number of the record
+     */
+    long reset() {
+        return append(new byte[] {RESET});
+    }
+
+    /**
+     * Writes a checkpoint: a snapshot of the car park beside the journal file, after which the
+     * journal keeps only the records that follow it. Changes are held up only while the snapshot
+     * is taken, which copies no spots; the snapshot file is written and the journal shortened
+     * while the car park carries on. The previous checkpoint's snapshot is deleted once the
+     * journal no longer starts from it. A crash at any point leaves a journal that opens to the
+     * same car park, from whichever checkpoint is complete, and opening it deletes any snapshot
+     * the crash left behind.
+     *
+     * @throws IOException if the snapshot or the shortened journal cannot be written
+     */
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            long id;
+            do {
+                id = ThreadLocalRandom.current().nextLong();
+            } while (id == 0 || id == checkpointId);
+            long checkpoint = id;
+            long[] mark = new long[2]; // Sequence number and file offset of the checkpoint record
+            CarParkSnapshot state = carPark.snapshotAnd(() -> {
+                synchronized (this) {
+                    mark[1] = appendedBytes;
+                    mark[0] = append(ByteBuffer.allocate(9).put(CHECKPOINT).putLong(checkpoint).array());
+                }
+            });
+            state.writeTo(checkpointFile(file, id));
+            try {
+                awaitWritten(mark[0]);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            synchronized (channelLock) {
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                FileChannel tail = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                try {
+                    long size = channel.size(); // Every record written so far; the writer waits for the lock
+                    for (long position = mark[1]; position < size; ) {
+                        position += channel.transferTo(position, size - position, tail);
+                    }
+                    tail.force(false);
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE); // The open channel follows the file
+                } catch (IOException | RuntimeException e) {
+                    tail.close();
+                    Files.deleteIfExists(temp);
+                    throw e;
+                }
+                channel.close();
+                channel = tail;
+                synchronized (this) {
+                    appendedBytes -= mark[1];
+                }
+            }
+            if (checkpointId != 0) {
+                Files.deleteIfExists(checkpointFile(file, checkpointId));
+            }
+            checkpointId = id;
+        }
+    }
+
+    /**
+     * Encodes a record made of a type and a spot ID.
+     *
+     * @param type the record type
+     * @param spotId the spot ID
+     * @return the record payload
+     */
+    private static byte[] encode(byte type, String spotId) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            out.writeUTF(spotId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Cannot happen for an in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Queues a record for the writer. The car park calls this while still holding the locks of
+     * the change, so records touching the same spot or car are queued in the order they happened.
+     *
+     * @param payload the record payload
+     * @return the sequence number of the record
+     */
+    private synchronized long append(byte[] payload) {
+        checkUsable();
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt(checksum(payload)).put(payload);
+        pending.add(record.array());
+        appendedBytes += record.capacity();
+        appendedSeq++;
+        notifyAll(); // Wake the writer
+        return appendedSeq;
+    }
+
+    /**
+     * Waits until a record is as durable as the fsync policy promises. Only the ON_COMMIT policy
+     * actually waits; the car park calls this after releasing its locks.
+     *
+     * @param seq the sequence number returned when the record was journaled
+     */
+    void awaitDurable(long seq) {
+        if (policy == FsyncPolicy.ON_COMMIT) {
+            awaitWritten(seq);
+        }
+    }
+
+    /**
+     * Waits until the writer has written a record, and forced it if the policy says so.
+     *
+     * @param seq the sequence number returned when the record was journaled
+     */
+    private synchronized void awaitWritten(long seq) {
+        boolean interrupted = false;
+        while (durableSeq < seq && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true; // Keep waiting, the change has already been made
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (durableSeq < seq) {
+            throw new UncheckedIOException("Journal write failed", failure);
+        }
+    }
+
+    /**
+     * Writes every queued record and stops the writer.
+     *
+     * @throws IOException if the final write or force fails
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (channelLock) {
+            channel.close();
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Writer thread: takes every queued record in one go, writes them together and forces them as
+     * the policy asks, then wakes the callers waiting on them.
+     */
+    private void writeLoop() {
+        long lastForce = System.nanoTime();
+        boolean unforced = false; // Whether records have been written since the last force
+        while (true) {
+            List<byte[]> batch;
+            long batchSeq;
+            boolean closing;
+            synchronized (this) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        wait(policy == FsyncPolicy.PERIODIC ? syncIntervalMillis : 0);
+                    } catch (InterruptedException e) {
+                        // Only close() stops the writer
+                    }
+                    if (policy == FsyncPolicy.PERIODIC && pending.isEmpty()) {
+                        break; // Idle tick, still force what an earlier batch left unforced
+                    }
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                batchSeq = appendedSeq;
+                closing = closed;
+            }
+            try {
+                synchronized (channelLock) {
+                    write(batch);
+                    unforced |= !batch.isEmpty();
+                    long now = System.nanoTime();
+                    boolean force = unforced && switch (policy) {
+                        case NEVER -> false;
+                        case PERIODIC -> closing || now - lastForce >= TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+                        case ON_COMMIT -> true;
+                    };
+                    if (force) {
+                        channel.force(false);
+                        lastForce = now;
+                        unforced = false;
+                    }
+                }
+                synchronized (this) {
+                    durableSeq = batchSeq;
+                    notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+            if (closing) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes a batch of encoded records with one gathering write.
+     *
+     * @param batch the encoded records
+     * @throws IOException if the write fails
+     */
+    private void write(List<byte[]> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(batch.get(i));
+        }
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    /**
+     * Fails fast once the journal is closed or a write has failed.
+     */
+    private void checkUsable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal write failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+    }
+
+    /**
+     * Computes the CRC32 of a record payload.
+     *
+     * @param payload the record payload
+     * @return the checksum as an int
+     */
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Receives the records read from a journal file.
+     */
+    private interface RecordVisitor {
+        /**
+         * Handles one intact record.
+         *
+         * @param offset the offset of the record in the file
+         * @param payload the record payload
+         * @throws IOException if the record cannot be handled
+         */
+        void visit(long offset, byte[] payload) throws IOException;
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+/**
+ * Notified by a {@link CarPark} after every change to its spots.
+ * <p>
+ * Events are delivered on the thread that made the change, while it still holds the locks of
+ * the spot involved, so the events for any one spot arrive in the order the changes happened.
+ * Listeners must therefore return quickly and must not call back into the car park; a GUI
+ * should hand events to a {@link CoalescingDispatcher} rather than update itself directly.
+ */
+public interface CarParkListener {
+    /**
+     * Called after the car park has changed.
+     *
+     * @param event the change
+     */
+    void carParkChanged(CarParkEvent event);
+}
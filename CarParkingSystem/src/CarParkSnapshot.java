@@ -0,0 +1,180 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+import util.IdCodec;
+import util.SpotSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable view of a car park at a single moment: every spot and the car parked in it then.
+ * Taking a snapshot only copies the car park's chunk pointers, one per 64 slots, so reports,
+ * exports and the GUI can read a coherent view while gates keep parking and removing cars.
+ * The car park copies a chunk before changing it, so a snapshot never changes.
+ */
+public class CarParkSnapshot {
+    private final SpotSlotTable.Chunk[] chunks; // Chunks as they were, shared with the table until it changes them
+    private final int epoch; // Epoch of the car park, cars parked in earlier ones had already left
+    private final int totalSpots;
+    private final int occupiedSpots;
+
+    /**
+     * Constructs a snapshot over chunks that will never change again. Called by the slot table.
+     *
+     * @param chunks the table's chunks
+     * @param epoch the table's current epoch
+     * @param totalSpots the number of spots
+     * @param occupiedSpots the number of cars parked
+     */
+    CarParkSnapshot(SpotSlotTable.Chunk[] chunks, int epoch, int totalSpots, int occupiedSpots) {
+        this.chunks = chunks;
+        this.epoch = epoch;
+        this.totalSpots = totalSpots;
+        this.occupiedSpots = occupiedSpots;
+    }
+
+    /**
+     * Gets the total number of parking spots.
+     *
+     * @return the total number of spots
+     */
+    public int getTotalSpots() {
+        return totalSpots;
+    }
+
+    /**
+     * Gets the number of occupied parking spots.
+     *
+     * @return the number of occupied spots
+     */
+    public int getOccupiedSpots() {
+        return occupiedSpots;
+    }
+
+    /**
+     * Gets the number of unoccupied parking spots.
+     *
+     * @return the number of unoccupied spots
+     */
+    public int getUnoccupiedSpots() {
+        return totalSpots - occupiedSpots;
+    }
+
+    /**
+     * Checks whether the car park had a spot.
+     *
+     * @param spotId the ID of the spot
+     * @return true if the spot existed
+     */
+    public boolean containsSpot(String spotId) {
+        return slotOf(spotId) >= 0;
+    }
+
+    /**
+     * Gets the car that was parked in a spot.
+     *
+     * @param spotId the ID of the spot
+     * @return the car, or null if the spot was vacant or did not exist
+     */
+    public Car getCar(String spotId) {
+        int slot = slotOf(spotId);
+        return slot < 0 ? null : carAt(slot);
+    }
+
+    /**
+     * Visits every spot with the car parked in it, in slot order.
+     *
+     * @param visitor given each spot ID and its car, or null for a vacant spot
+     */
+    public void forEachSpot(BiConsumer<String, Car> visitor) {
+        for (int c = 0; c < chunks.length; c++) {
+            SpotSlotTable.Chunk chunk = chunks[c];
+            if (chunk == null) {
+                continue;
+            }
+            for (long word = chunk.present; word != 0; word &= word - 1) {
+                int slot = c * SpotSlotTable.CHUNK_SLOTS + Long.numberOfTrailingZeros(word);
+                visitor.accept(chunk.spots[slot & (SpotSlotTable.CHUNK_SLOTS - 1)].getId(), carAt(slot));
+            }
+        }
+    }
+
+    /**
+     * Writes every spot and parked car to a binary snapshot file, read back by
+     * {@link CarPark#fromSnapshot}.
+     *
+     * @param file the snapshot file, replaced once the new one is complete
+     * @throws IOException if the file cannot be written
+     */
+    public void writeTo(Path file) throws IOException {
+        try (SpotSnapshot.Writer writer = SpotSnapshot.create(file)) {
+            forEachSpot((spotId, car) -> { // Straight from the spot and car columns
+                try {
+                    if (car == null) {
+                        writer.vacant(spotId, null);
+                    } else {
+                        writer.write(spotId, null, SpotSnapshot.CAR, car.getRegistrationNumber(), car.getMake(),
+                                car.getModel(), car.getYear(), car.getParkingTime());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Gets the car parked in a slot that holds a spot.
+     *
+     * @param slot the slot
+     * @return the car, or null if the spot was vacant
+     */
+    private Car carAt(int slot) {
+        SpotSlotTable.Chunk chunk = chunks[slot / SpotSlotTable.CHUNK_SLOTS];
+        return chunk.holdsCar(slot, epoch) ? chunk.cars[slot & (SpotSlotTable.CHUNK_SLOTS - 1)] : null;
+    }
+
+    /**
+     * Finds the slot a spot was in. A packed ID gives its slot directly; other IDs are looked for
+     * among the slots after the packed codes.
+     *
+     * @param spotId the ID of the spot
+     * @return the slot, or -1 if the spot did not exist
+     */
+    private int slotOf(String spotId) {
+        int slot = IdCodec.encodeSpotId(spotId);
+        if (slot != IdCodec.NOT_ENCODABLE) {
+            return spotAt(slot) != null ? slot : -1;
+        }
+        for (int c = IdCodec.SPOT_ID_CODES / SpotSlotTable.CHUNK_SLOTS; c < chunks.length; c++) {
+            SpotSlotTable.Chunk chunk = chunks[c];
+            long word = chunk == null ? 0 : chunk.present;
+            for (; word != 0; word &= word - 1) {
+                int i = Long.numberOfTrailingZeros(word);
+                int candidate = c * SpotSlotTable.CHUNK_SLOTS + i;
+                if (candidate >= IdCodec.SPOT_ID_CODES && chunk.spots[i].getId().equals(spotId)) {
+                    return candidate;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the spot in a slot.
+     *
+     * @param slot the slot
+     * @return the spot, or null if the slot is out of range or was free
+     */
+    private ParkingSpot spotAt(int slot) {
+        int c = slot / SpotSlotTable.CHUNK_SLOTS;
+        return c < chunks.length && chunks[c] != null ? chunks[c].spots[slot & (SpotSlotTable.CHUNK_SLOTS - 1)] : null;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Collects car park events from any thread and hands them to the Event Dispatch Thread at most
+ * once per frame, merged into one {@link Changes} batch. A burst of thousands of changes then
+ * costs one update of the GUI, and a spot changed several times within a frame is updated once.
+ */
+public class CoalescingDispatcher implements CarParkListener {
+    private static final int FRAME_MILLIS = 16; // About 60 updates a second at most
+    // Waits out the frame before a batch is handed to the EDT, shared by all dispatchers
+    private static final ScheduledExecutorService FRAME_CLOCK = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "coalescing-dispatcher");
+        thread.setDaemon(true); // Must not keep the program alive
+        return thread;
+    });
+
+    private final Consumer<Changes> handler; // Called on the EDT with each batch
+    private Changes pending = new Changes(); // Guarded by this
+    private boolean scheduled; // Whether delivery of the pending batch is scheduled, guarded by this
+
+    /**
+     * Constructs a CoalescingDispatcher.
+     *
+     * @param handler called on the Event Dispatch Thread with each batch of changes
+     */
+    public CoalescingDispatcher(Consumer<Changes> handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Adds an event to the current batch, scheduling its delivery a frame later if the batch was empty.
+     *
+     * @param event the change
+     */
+    @Override
+    public void carParkChanged(CarParkEvent event) {
+        boolean start;
+        synchronized (this) {
+            pending.add(event);
+            start = !scheduled;
+            scheduled = true;
+        }
+        if (start) {
+            FRAME_CLOCK.schedule(() -> SwingUtilities.invokeLater(this::flush), FRAME_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Hands the current batch to the handler. Runs on the Event Dispatch Thread.
+     */
+    private void flush() {
+        Changes changes;
+        synchronized (this) {
+            changes = pending;
+            pending = new Changes();
+            scheduled = false;
+        }
+        handler.accept(changes);
+    }
+
+    /**
+     * The changes made to a car park during one frame. A spot appears in at most one of the
+     * added, deleted and changed sets: a spot added and deleted within the frame is left out,
+     * and one deleted and added again counts as changed.
+     */
+    public static class Changes {
+        private final Set<String> added = new LinkedHashSet<>(); // Spots added, in order
+        private final Set<String> deleted = new LinkedHashSet<>(); // Spots deleted
+        private final Set<String> changed = new LinkedHashSet<>(); // Spots whose car was parked or removed
+        private boolean reset; // Whether the car park was reset
+
+        /**
+         * Merges an event into the batch.
+         *
+         * @param event the change
+         */
+        private void add(CarParkEvent event) {
+            String spotId = event.getSpotId();
+            switch (event.getType()) {
+                case PARKED, REMOVED -> {
+                    if (!added.contains(spotId)) {
+                        changed.add(spotId);
+                    }
+                }
+                case ADDED -> {
+                    if (deleted.remove(spotId)) {
+                        changed.add(spotId); // Same spot again, its cell can stay where it is
+                    } else {
+                        added.add(spotId);
+                    }
+                }
+                case DELETED -> {
+                    changed.remove(spotId);
+                    if (!added.remove(spotId)) {
+                        deleted.add(spotId);
+                    }
+                }
+                case RESET -> reset = true;
+            }
+        }
+
+        /**
+         * Gets the spots added during the frame.
+         *
+         * @return the IDs of the added spots, in the order they were added
+         */
+        public Set<String> getAdded() {
+            return Collections.unmodifiableSet(added);
+        }
+
+        /**
+         * Gets the spots deleted during the frame.
+         *
+         * @return the IDs of the deleted spots
+         */
+        public Set<String> getDeleted() {
+            return Collections.unmodifiableSet(deleted);
+        }
+
+        /**
+         * Gets the spots that had a car parked or removed during the frame.
+         *
+         * @return the IDs of the changed spots
+         */
+        public Set<String> getChanged() {
+            return Collections.unmodifiableSet(changed);
+        }
+
+        /**
+         * Checks whether the car park was reset during the frame, in which case any spot may have changed.
+         *
+         * @return true if the car park was reset
+         */
+        public boolean isReset() {
+            return reset;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Several car parks run as one facility, for operators with many lots and levels. Each spot
+ * belongs to exactly one car park, its shard, chosen from the spot ID by a router, and every
+ * shard keeps its own locks, so gates on different shards never contend. Calls naming a spot are
+ * sent to its shard; lookups by registration number, make and the occupancy totals ask every
+ * shard at once through the common fork-join pool and merge the answers.
+ * <p>
+ * A registration number is parked at most once across all shards: parking takes a registry-wide
+ * lock on the number while the other shards are checked. Changes made on a shard directly bypass
+ * that check. Aggregate answers are merged shard by shard, so while gates keep changing the
+ * shards they need not describe a single moment.
+ */
+public class FacilityRegistry {
+    private static final int LOOKUP_GRAIN = 64; // Shards asked one after another for a hash lookup or a counter
+    private static final int SEARCH_GRAIN = 1; // Shards per task when each answer is a set of spots to copy
+
+    private final CarPark[] shards;
+    private final ToIntFunction<String> router; // Index of the shard holding a spot ID
+    private final StripedLock plates = StripedLock.forAvailableProcessors(); // Guards registration numbers across shards
+
+    /**
+     * Constructs a registry of new, empty concurrent car parks, with spots shared out between
+     * them by the hash of their ID.
+     *
+     * @param shardCount the number of car parks
+     */
+    public FacilityRegistry(int shardCount) {
+        this(newShards(shardCount), spotId -> Math.floorMod(spotId.hashCode(), shardCount));
+    }
+
+    /**
+     * Constructs a registry over existing car parks, e.g. one per lot. The shards should be
+     * concurrent if the registry is shared between threads, and the router must send every
+     * spot ID already in a shard to that shard.
+     *
+     * @param shards the car parks
+     * @param router gives the index in shards of the car park holding a spot ID
+     */
+    public FacilityRegistry(List<CarPark> shards, ToIntFunction<String> router) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("A facility registry needs at least one car park");
+        }
+        this.shards = shards.toArray(new CarPark[0]);
+        this.router = router;
+    }
+
+    /**
+     * Gets the car parks of the registry.
+     *
+     * @return a read-only list of the shards, in index order
+     */
+    public List<CarPark> getShards() {
+        return List.of(shards);
+    }
+
+    /**
+     * Gets the car park a spot belongs to, whether or not the spot exists yet.
+     *
+     * @param spotId the ID of the parking spot
+     * @return the shard the spot is routed to
+     */
+    public CarPark getShard(String spotId) {
+        return shards[router.applyAsInt(spotId)];
+    }
+
+    /**
+     * Adds a new parking spot to the car park it is routed to.
+     *
+     * @param spotId the ID of the new parking spot
+     * @return true if the spot was added successfully, false otherwise
+     */
+    public boolean addSpot(String spotId) {
+        return getShard(spotId).addSpot(spotId);
+    }
+
+    /**
+     * Deletes a parking spot if it's not occupied.
+     *
+     * @param spotId the ID of the parking spot to delete
+     * @return true if the spot was deleted successfully, false otherwise
+     */
+    public boolean deleteSpot(String spotId) {
+        return getShard(spotId).deleteSpot(spotId);
+    }
+
+    /**
+     * Finds and returns a parking spot by its ID.
+     *
+     * @param spotId the ID of the parking spot
+     * @return the ParkingSpot object if found, null otherwise
+     */
+    public ParkingSpot findSpot(String spotId) {
+        return getShard(spotId).findSpot(spotId);
+    }
+
+    /**
+     * Parks a car in a specified parking spot if it's not already occupied and the car is not
+     * parked in any of the car parks.
+     *
+     * @param spotId the ID of the parking spot
+     * @param car the Car object to be parked
+     * @return true if the car was parked successfully, false otherwise
+     */
+    public boolean parkCar(String spotId, Car car) {
+        String regNumber = car.getRegistrationNumber();
+        plates.lock(regNumber); // No other shard can take the number between the check and the parking
+        try {
+            if (findCarByRegNumber(regNumber) != null) {
+                return false; // Car with the same registration number already parked
+            }
+            return getShard(spotId).parkCar(spotId, car);
+        } finally {
+            plates.unlock(regNumber);
+        }
+    }
+
+    /**
+     * Removes a car from a specified parking spot by its ID.
+     *
+     * @param spotId the ID of the parking spot
+     * @return true if the car was removed successfully, false otherwise
+     */
+    public boolean removeCarBySpot(String spotId) {
+        return getShard(spotId).removeCarBySpot(spotId);
+    }
+
+    /**
+     * Removes a car by its registration number, from whichever car park it is in.
+     *
+     * @param regNumber the registration number of the car
+     * @return true if the car was removed successfully, false otherwise
+     */
+    public boolean removeCarByRegNumber(String regNumber) {
+        plates.lock(regNumber); // The car cannot move to another shard while it is looked for
+        try {
+            CarPark shard = fanOut(LOOKUP_GRAIN, carPark -> carPark.isCarInPark(regNumber) ? carPark : null,
+                    (left, right) -> left != null ? left : right);
+            return shard != null && shard.removeCarByRegNumber(regNumber);
+        } finally {
+            plates.unlock(regNumber);
+        }
+    }
+
+    /**
+     * Checks if a car with a given registration number is in any of the car parks.
+     *
+     * @param regNumber the registration number of the car
+     * @return true if the car is in a car park, false otherwise
+     */
+    public boolean isCarInPark(String regNumber) {
+        return findCarByRegNumber(regNumber) != null;
+    }
+
+    /**
+     * Finds and returns the parking spot containing a car, asking every car park.
+     *
+     * @param regNumber the registration number of the car
+     * @return the ParkingSpot object if found, null otherwise
+     */
+    public ParkingSpot findCarByRegNumber(String regNumber) {
+        return fanOut(LOOKUP_GRAIN, carPark -> carPark.findCarByRegNumber(regNumber),
+                (left, right) -> left != null ? left : right);
+    }
+
+    /**
+     * Finds and returns all parking spots containing cars of a specific make, across every car park.
+     * The make is matched ignoring case and surrounding whitespace.
+     *
+     * @param make the make of the car
+     * @return a read-only copy of the matching spots by spot ID
+     */
+    public Map<String, ParkingSpot> findCarsByMake(String make) {
+        return Collections.unmodifiableMap(fanOut(SEARCH_GRAIN, carPark -> new HashMap<>(carPark.findCarsByMake(make)),
+                FacilityRegistry::merge));
+    }
+
+    /**
+     * Finds and returns all parking spots containing cars of a specific make and model, across
+     * every car park. Both values are matched ignoring case and surrounding whitespace.
+     *
+     * @param make the make of the car
+     * @param model the model of the car
+     * @return a read-only copy of the matching spots by spot ID
+     */
+    public Map<String, ParkingSpot> findCarsByMakeAndModel(String make, String model) {
+        return Collections.unmodifiableMap(fanOut(SEARCH_GRAIN,
+                carPark -> new HashMap<>(carPark.findCarsByMakeAndModel(make, model)),
+                FacilityRegistry::merge));
+    }
+
+    /**
+     * Gets the total number of parking spots in all the car parks.
+     *
+     * @return the total number of spots
+     */
+    public int getTotalSpots() {
+        return fanOut(LOOKUP_GRAIN, CarPark::getTotalSpots, Integer::sum);
+    }
+
+    /**
+     * Gets the number of occupied parking spots in all the car parks.
+     *
+     * @return the number of occupied spots
+     */
+    public int getOccupiedSpots() {
+        return fanOut(LOOKUP_GRAIN, CarPark::getOccupiedSpots, Integer::sum);
+    }
+
+    /**
+     * Gets the number of unoccupied parking spots in all the car parks.
+     *
+     * @return the number of unoccupied spots
+     */
+    public int getUnoccupiedSpots() {
+        return fanOut(LOOKUP_GRAIN, CarPark::getUnoccupiedSpots, Integer::sum);
+    }
+
+    /**
+     * Asks every shard a question in the common fork-join pool and merges the answers. When all
+     * the shards fit in one task, the calling thread asks them itself and the pool is not used.
+     *
+     * @param grain the number of shards one task asks rather than splitting
+     * @param query the question for one shard
+     * @param merge combines the answers of two groups of shards
+     * @param <R> the type of answer
+     * @return the merged answer
+     */
+    private <R> R fanOut(int grain, Function<CarPark, R> query, BinaryOperator<R> merge) {
+        ShardTask<R> task = new ShardTask<>(shards, 0, shards.length, grain, query, merge);
+        return shards.length <= grain ? task.compute() : ForkJoinPool.commonPool().invoke(task);
+    }
+
+    /**
+     * Merges two maps of spots, adding the smaller to the larger.
+     *
+     * @param left one map
+     * @param right the other map
+     * @return the merged map
+     */
+    private static HashMap<String, ParkingSpot> merge(HashMap<String, ParkingSpot> left,
+                                                      HashMap<String, ParkingSpot> right) {
+        if (left.size() < right.size()) {
+            right.putAll(left);
+            return right;
+        }
+        left.putAll(right);
+        return left;
+    }
+
+    /**
+     * Creates empty concurrent car parks.
+     *
+     * @param count the number of car parks
+     * @return the car parks
+     */
+    private static List<CarPark> newShards(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("A facility registry needs at least one car park: " + count);
+        }
+        CarPark[] shards = new CarPark[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new CarPark(true);
+        }
+        return List.of(shards);
+    }
+
+    /**
+     * Asks a range of shards a question, splitting the range in two until it is small enough
+     * to ask one shard after another.
+     *
+     * @param <R> the type of answer
+     */
+    private static class ShardTask<R> extends RecursiveTask<R> {
+        private final CarPark[] shards;
+        private final int from; // First shard of the range
+        private final int to; // Shard after the last of the range
+        private final int grain; // Largest range asked without splitting
+        private final Function<CarPark, R> query;
+        private final BinaryOperator<R> merge;
+
+        private ShardTask(CarPark[] shards, int from, int to, int grain, Function<CarPark, R> query,
+                          BinaryOperator<R> merge) {
+            this.shards = shards;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.query = query;
+            this.merge = merge;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= grain) {
+                R result = query.apply(shards[from]);
+                for (int i = from + 1; i < to; i++) {
+                    result = merge.apply(result, query.apply(shards[i]));
+                }
+                return result;
+            }
+            int middle = (from + to) >>> 1;
+            ShardTask<R> left = new ShardTask<>(shards, from, middle, grain, query, merge);
+            left.fork();
+            R right = new ShardTask<>(shards, middle, to, grain, query, merge).compute();
+            return merge.apply(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+import domain.ParkingSpot;
+import domain.Vehicle;
+import exceptions.ParkingFullException;
+import service.ParkingService;
+import util.IdCodec;
+import util.LatencyHistogram;
+import util.ParkingSpotType;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless load simulation of gate traffic against a concurrent {@link CarPark} and a {@link ParkingService}.
+ * <p>
+ * Every gate is a virtual thread that admits cars with exponentially distributed gaps; every admitted car
+ * is another virtual thread that parks, stays for its dwell time and leaves. Each car-park call is timed
+ * and the report gives throughput and p50/p99/p999 latency per operation, plus any invariant violations
+ * seen along the way, such as a spot holding two cars or a plate admitted twice.
+ * <p>
+ * Options, all optional: {@code --spots=10000 --gates=2000 --seconds=10 --arrivalMs=200 --dwellMs=2000
+ * --dwell=exponential|uniform|fixed --target=both|carpark|service --ids=packed|free}
+ * <p>
+ * With {@code --ids=packed}, the default, spot IDs look like {@code A123} and plates like {@code A1234}, the
+ * formats the car park keys by their code; spots beyond the 26,000 such IDs are named freely, and plates wrap
+ * around after 260,000 arrivals. {@code --ids=free} names every spot and plate outside those formats.
+ */
+public class GateTrafficSimulator {
+    private final int spots;
+    private final int gates;
+    private final int seconds;
+    private final double arrivalMillis; // Mean gap between arrivals at one gate
+    private final double dwellMillis; // Mean time a car stays
+    private final String dwell; // Dwell time distribution
+    private final boolean driveCarPark;
+    private final boolean driveService;
+    private final boolean packedIds; // Spot IDs and plates in the formats the car park packs into codes
+
+    private final CarPark carPark;
+    private final ParkingService service;
+    private final String[] spotIds;
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>(); // By operation, in report order
+    private final Map<String, LongAdder> violations = new ConcurrentHashMap<>(); // By kind
+    private final Map<Integer, Vehicle> allocated = new ConcurrentHashMap<>(); // Service spots we hold, by number
+    private final LongAdder rejected = new LongAdder(); // Arrivals turned away because the park was full
+    private final AtomicLong plates = new AtomicLong(); // Source of unique registration numbers
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a simulator from parsed options.
+     *
+     * @param options the options by name
+     */
+    private GateTrafficSimulator(Map<String, String> options) {
+        spots = Integer.parseInt(options.getOrDefault("spots", "10000"));
+        gates = Integer.parseInt(options.getOrDefault("gates", "2000"));
+        seconds = Integer.parseInt(options.getOrDefault("seconds", "10"));
+        arrivalMillis = Double.parseDouble(options.getOrDefault("arrivalMs", "200"));
+        dwellMillis = Double.parseDouble(options.getOrDefault("dwellMs", "2000"));
+        dwell = options.getOrDefault("dwell", "exponential");
+        String target = options.getOrDefault("target", "both");
+        driveCarPark = !target.equals("service");
+        driveService = !target.equals("carpark");
+        packedIds = options.getOrDefault("ids", "packed").equals("packed");
+
+        carPark = new CarPark(true);
+        spotIds = new String[spots];
+        for (int i = 0; i < spots; i++) {
+            spotIds[i] = packedIds && i < IdCodec.SPOT_ID_CODES ? IdCodec.decodeSpotId(i) : "S" + i;
+            carPark.addSpot(spotIds[i]);
+        }
+        service = new ParkingService(spots);
+        for (String operation : new String[] {"park", "find", "remove", "allocate", "release"}) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Runs the simulation and prints the report.
+     *
+     * @param args options of the form --name=value
+     * @throws InterruptedException if interrupted while waiting for the cars to leave
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "true");
+        }
+        PrintStream console = System.out;
+        GateTrafficSimulator simulator = new GateTrafficSimulator(options);
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // ParkingSpot logs every park and vacate
+        long elapsed;
+        try {
+            elapsed = simulator.run();
+        } finally {
+            System.setOut(console);
+        }
+        simulator.report(console, elapsed);
+    }
+
+    /**
+     * Runs the gates for the configured time, then sends every car still parked home.
+     *
+     * @return the elapsed time in nanoseconds
+     * @throws InterruptedException if interrupted while waiting for the cars to leave
+     */
+    private long run() throws InterruptedException {
+        long start = System.nanoTime();
+        try (ExecutorService cars = Executors.newVirtualThreadPerTaskExecutor();
+             ExecutorService gateThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int gate = 0; gate < gates; gate++) {
+                gateThreads.submit(() -> {
+                    while (running) {
+                        if (!pause(exponential(arrivalMillis))) {
+                            return;
+                        }
+                        cars.submit(this::visit);
+                    }
+                });
+            }
+            TimeUnit.SECONDS.sleep(seconds);
+            running = false;
+            gateThreads.shutdownNow(); // Gates stop admitting
+            gateThreads.awaitTermination(1, TimeUnit.MINUTES);
+            cars.shutdownNow(); // Parked cars cut their stay short and leave
+            cars.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * One car's visit: park in the car park and/or take a spot from the service, stay, then leave.
+     */
+    private void visit() {
+        long arrival = plates.incrementAndGet();
+        String regNumber = packedIds ? IdCodec.decodePlate((int) (arrival % IdCodec.PLATE_CODES)) : "G" + arrival;
+        String spotId = driveCarPark ? parkInCarPark(regNumber) : null;
+        Vehicle vehicle = driveService ? new domain.Car(regNumber) : null; // Not the car park's Car
+        ParkingSpot spot = driveService ? allocateInService(vehicle) : null;
+        if (spotId == null && spot == null) {
+            return;
+        }
+        pause(dwellTime()); // Interrupted at shutdown, then leave straight away
+        if (spotId != null) {
+            leaveCarPark(spotId, regNumber);
+        }
+        if (spot != null) {
+            leaveService(spot, vehicle);
+        }
+    }
+
+    /**
+     * Parks a car in a random free car park spot, checking that it ends up alone there and
+     * that its plate cannot be admitted a second time.
+     *
+     * @param regNumber the car's registration number
+     * @return the spot ID, or null if no free spot was found
+     */
+    private String parkInCarPark(String regNumber) {
+        Car car = new Car(regNumber, "Make" + (regNumber.hashCode() & 7), "Model", 2020);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < 3; attempt++) {
+            String spotId = spotIds[random.nextInt(spots)];
+            long start = System.nanoTime();
+            boolean parked = carPark.parkCar(spotId, car);
+            latencies.get("park").record(System.nanoTime() - start);
+            if (parked) {
+                if (carPark.findSpot(spotId).getCar() != car) {
+                    violation("spot holds another car right after parking");
+                }
+                if (random.nextInt(100) == 0) { // Now and then, try to sneak the same plate in elsewhere
+                    String other = spotIds[random.nextInt(spots)];
+                    if (!other.equals(spotId) && carPark.parkCar(other, new Car(regNumber, "Clone", "Clone", 2020))) {
+                        violation("plate admitted twice");
+                        carPark.removeCarBySpot(other);
+                    }
+                }
+                return spotId;
+            }
+        }
+        rejected.increment();
+        return null;
+    }
+
+    /**
+     * Removes a car from the car park by plate, checking it is still where it parked.
+     *
+     * @param spotId the spot the car parked in
+     * @param regNumber the car's registration number
+     */
+    private void leaveCarPark(String spotId, String regNumber) {
+        long start = System.nanoTime();
+        var spot = carPark.findCarByRegNumber(regNumber); // The car park's ParkingSpot, not the imported one
+        latencies.get("find").record(System.nanoTime() - start);
+        if (spot == null || !spot.getId().equals(spotId)) {
+            violation("car not found in its spot");
+        }
+        start = System.nanoTime();
+        boolean removed = carPark.removeCarByRegNumber(regNumber);
+        latencies.get("remove").record(System.nanoTime() - start);
+        if (!removed) {
+            violation("car could not be removed");
+        }
+    }
+
+    /**
+     * Takes the lowest free spot of a random type from the service, checking nobody else holds it.
+     *
+     * @param vehicle the vehicle to park
+     * @return the spot, or null if the service is full for that type
+     */
+    private ParkingSpot allocateInService(Vehicle vehicle) {
+        ParkingSpotType type = ParkingSpotType.values()[ThreadLocalRandom.current().nextInt(ParkingSpotType.values().length)];
+        long start = System.nanoTime();
+        try {
+            ParkingSpot spot = service.allocate(type, vehicle);
+            latencies.get("allocate").record(System.nanoTime() - start);
+            if (allocated.putIfAbsent(spot.getSpotNumber(), vehicle) != null) {
+                violation("service spot allocated twice");
+            }
+            return spot;
+        } catch (ParkingFullException e) {
+            latencies.get("allocate").record(System.nanoTime() - start);
+            rejected.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Releases a service spot, checking the vehicle is still the one in it.
+     *
+     * @param spot the spot
+     * @param vehicle the vehicle that was allocated the spot
+     */
+    private void leaveService(ParkingSpot spot, Vehicle vehicle) {
+        if (spot.getCurrentVehicle() != vehicle || !allocated.remove(spot.getSpotNumber(), vehicle)) {
+            violation("service spot taken over by another vehicle");
+        }
+        long start = System.nanoTime();
+        service.release(spot.getSpotNumber());
+        latencies.get("release").record(System.nanoTime() - start);
+    }
+
+    /**
+     * Prints throughput, latency percentiles, and invariant checks.
+     *
+     * @param out where to print
+     * @param elapsedNanos how long the simulation ran
+     */
+    private void report(PrintStream out, long elapsedNanos) {
+        double elapsedSeconds = elapsedNanos / 1e9;
+        out.printf("%,d spots, %,d gates, %.1f s, arrivals every %.0f ms per gate, %s dwell of %.0f ms, %s IDs%n",
+                spots, gates, elapsedSeconds, arrivalMillis, dwell, dwellMillis, packedIds ? "packed" : "free");
+        out.printf("%-10s %12s %12s %10s %10s %10s %10s%n", "operation", "count", "ops/s", "p50 us", "p99 us", "p999 us", "max us");
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.count() == 0) {
+                continue;
+            }
+            out.printf("%-10s %,12d %,12.0f %10.1f %10.1f %10.1f %10.1f%n", entry.getKey(), histogram.count(),
+                    histogram.count() / elapsedSeconds, histogram.percentile(0.50) / 1e3,
+                    histogram.percentile(0.99) / 1e3, histogram.percentile(0.999) / 1e3, histogram.max() / 1e3);
+        }
+        out.printf("Arrivals turned away (full): %,d%n", rejected.sum());
+
+        // Everyone has left, so both parks must be empty and the car park's indexes consistent
+        if (!carPark.isIndexConsistent()) {
+            violation("car park indexes inconsistent");
+        }
+        if (carPark.getOccupiedSpots() != 0) {
+            violation("car park not empty after all cars left");
+        }
+        if (service.getOccupancy().getOccupiedSpots() != 0 || !allocated.isEmpty()) {
+            violation("service not empty after all vehicles left");
+        }
+        if (violations.isEmpty()) {
+            out.println("No invariant violations.");
+        } else {
+            violations.forEach((kind, count) -> out.printf("VIOLATION %s: %,d%n", kind, count.sum()));
+        }
+    }
+
+    /**
+     * Counts an invariant violation.
+     *
+     * @param kind what went wrong
+     */
+    private void violation(String kind) {
+        violations.computeIfAbsent(kind, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Draws a dwell time from the configured distribution.
+     *
+     * @return the dwell time in milliseconds
+     */
+    private double dwellTime() {
+        return switch (dwell) {
+            case "fixed" -> dwellMillis;
+            case "uniform" -> ThreadLocalRandom.current().nextDouble(2 * dwellMillis);
+            default -> exponential(dwellMillis);
+        };
+    }
+
+    /**
+     * Draws from an exponential distribution.
+     *
+     * @param mean the mean
+     * @return the sample
+     */
+    private static double exponential(double mean) {
+        return -mean * Math.log(1 - ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * Sleeps for a while.
+     *
+     * @param millis how long to sleep, in milliseconds
+     * @return false if the sleep was interrupted
+     */
+    private static boolean pause(double millis) {
+        try {
+            TimeUnit.MICROSECONDS.sleep((long) (millis * 1000));
+            return true;
+        } catch (InterruptedException e) {
+            return false; // Interrupt status deliberately cleared, so the caller can go on to leave cleanly
+        }
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+/**
+ * Notified by an {@link OverstayMonitor} when a car has been parked for longer than allowed.
+ */
+public interface OverstayListener {
+    /**
+     * Called once for each car that overstays, on the monitor's timer thread.
+     *
+     * @param spotId the ID of the spot the car is parked in
+     * @param car the car that has overstayed
+     */
+    void overstayed(String spotId, Car car);
+}
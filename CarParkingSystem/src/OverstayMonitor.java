@@ -0,0 +1,184 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+import util.TimingWheel;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Raises an alert when a car stays in a car park longer than allowed. Every car gets an expiry
+ * in a timing wheel when it parks, which is cancelled when it leaves, so the cost per car is
+ * constant and the spots are never scanned.
+ * <p>
+ * Time comes from an injected millisecond clock. {@link #start()} advances the wheel on a
+ * background thread; tests can instead move their clock forward and call {@link #advance()}.
+ */
+public final class OverstayMonitor implements CarParkListener, AutoCloseable {
+    private static final long DEFAULT_TICK_MILLIS = 1000; // Alerts fire within a second of falling due
+    private static final int WHEEL_BUCKETS = 4096; // Over an hour of one-second ticks per lap
+
+    private final CarPark carPark; // The car park watched
+    private final long allowedMillis; // Longest stay before an alert
+    private final OverstayListener listener; // Told about each overstaying car
+    private final TimingWheel<Stay> wheel; // Expiry of every parked car
+    private final Map<String, TimingWheel.Timeout<Stay>> timeouts; // Pending expiry by spot ID
+    private ScheduledExecutorService ticker; // Advances the wheel, null unless started
+
+    /**
+     * Constructs an OverstayMonitor using the system clock.
+     *
+     * @param carPark the car park to watch
+     * @param allowedStay the longest a car may stay
+     * @param listener told about each car that stays longer
+     */
+    public OverstayMonitor(CarPark carPark, Duration allowedStay, OverstayListener listener) {
+        this(carPark, allowedStay, listener, () -> System.nanoTime() / 1_000_000, DEFAULT_TICK_MILLIS);
+    }
+
+    /**
+     * Constructs an OverstayMonitor and schedules the cars already parked, allowing for the time
+     * they have been parked so far.
+     *
+     * @param carPark the car park to watch
+     * @param allowedStay the longest a car may stay
+     * @param listener told about each car that stays longer
+     * @param clock the current time in milliseconds
+     * @param tickMillis how often the wheel moves on, which bounds how late an alert may be
+     */
+    public OverstayMonitor(CarPark carPark, Duration allowedStay, OverstayListener listener,
+                           LongSupplier clock, long tickMillis) {
+        this.carPark = carPark;
+        this.allowedMillis = allowedStay.toMillis();
+        this.listener = listener;
+        this.wheel = new TimingWheel<>(tickMillis, WHEEL_BUCKETS, clock, this::expired);
+        this.timeouts = new ConcurrentHashMap<>();
+        carPark.addCarParkListener(this); // Before the scan, so no car parked meanwhile is missed
+        LocalDateTime now = LocalDateTime.now();
+        for (ParkingSpot spot : carPark.getSpots().values()) {
+            Car car = spot.getCar();
+            if (car != null && car.getParkingTime() != null) {
+                long parkedMillis = Duration.between(car.getParkingTime(), now).toMillis();
+                timeouts.computeIfAbsent(spot.getId(), id -> wheel.schedule(new Stay(id, car), allowedMillis - parkedMillis));
+            }
+        }
+    }
+
+    /**
+     * Starts advancing the wheel once per tick on a background thread.
+     */
+    public synchronized void start() {
+        if (ticker == null) {
+            ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "overstay-monitor");
+                thread.setDaemon(true); // Must not keep the program alive
+                return thread;
+            });
+            long tick = wheel.getTickMillis();
+            ticker.scheduleAtFixedRate(this::advance, tick, tick, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Fires the alerts of every car whose allowed stay has ended by the clock.
+     *
+     * @return the number of stays that ended
+     */
+    public int advance() {
+        return wheel.advance();
+    }
+
+    /**
+     * Gets the number of parked cars whose allowed stay has not yet ended. Cars cleared by a
+     * reset are counted until their expiry comes round.
+     *
+     * @return the number of pending expiries
+     */
+    public int getPendingCount() {
+        return wheel.size();
+    }
+
+    /**
+     * Stops watching the car park and stops the background thread.
+     */
+    @Override
+    public synchronized void close() {
+        carPark.removeCarParkListener(this);
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    /**
+     * Schedules or cancels the expiry of the car involved in a change.
+     *
+     * @param event the change
+     */
+    @Override
+    public void carParkChanged(CarParkEvent event) {
+        switch (event.getType()) {
+            case PARKED -> {
+                TimingWheel.Timeout<Stay> old = timeouts.put(event.getSpotId(),
+                        wheel.schedule(new Stay(event.getSpotId(), event.getCar()), allowedMillis));
+                if (old != null) {
+                    wheel.cancel(old); // Left without an event reaching us, e.g. before the initial scan finished
+                }
+            }
+            case REMOVED, DELETED -> cancel(event.getSpotId());
+            default -> {
+                // Adding a spot does not affect any car. After a reset the cars from before it keep their expiry,
+                // which then finds them gone and raises no alert, so the reset stays constant-time here too.
+            }
+        }
+    }
+
+    /**
+     * Cancels the pending expiry of the car in a spot, if any.
+     *
+     * @param spotId the ID of the spot
+     */
+    private void cancel(String spotId) {
+        TimingWheel.Timeout<Stay> timeout = timeouts.remove(spotId);
+        if (timeout != null) {
+            wheel.cancel(timeout);
+        }
+    }
+
+    /**
+     * Handles an expired stay, alerting if the car is still in its spot.
+     *
+     * @param stay the stay that ended
+     */
+    private void expired(Stay stay) {
+        TimingWheel.Timeout<Stay> timeout = timeouts.get(stay.spotId);
+        if (timeout != null && timeout.getItem() == stay) {
+            timeouts.remove(stay.spotId, timeout);
+        }
+        ParkingSpot spot = carPark.findSpot(stay.spotId);
+        if (spot != null && spot.getCar() == stay.car) {
+            listener.overstayed(stay.spotId, stay.car);
+        }
+    }
+
+    /**
+     * A car's stay in a spot, the item scheduled in the wheel.
+     */
+    private static class Stay {
+        private final String spotId;
+        private final Car car;
+
+        private Stay(String spotId, Car car) {
+            this.spotId = spotId;
+            this.car = car;
+        }
+    }
+}
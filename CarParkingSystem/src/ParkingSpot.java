@@ -7,8 +7,11 @@
  * Represents a parking spot in a car park.
  */
 public class ParkingSpot {
-    private String id; // ID of the parking spot
-    private Car car; // Car parked in the spot, null if the spot is vacant
+    private final String id; // ID of the parking spot
+    private volatile Car car; // Car parked in the spot, null if the spot is vacant; volatile for lock-free readers
+    private volatile int epoch; // Reset epoch of the car park when the car parked
+    private SpotSlotTable table; // Slot table of the car park the spot is in, null if none
+    private int slot = -1; // Position in the car park's slot table, -1 if not in a car park
 
     /**
      * Constructs a ParkingSpot object with the specified ID.
@@ -35,7 +38,7 @@ public class ParkingSpot {
      * @return true if the spot is occupied, false otherwise
      */
     public boolean isOccupied() {
-        return car != null;
+        return getCar() != null;
     }
 
     /**
@@ -44,7 +47,19 @@ public class ParkingSpot {
      * @return the car parked in the spot, null if the spot is vacant
      */
     public Car getCar() {
-        return car;
+        int parkedEpoch = epoch; // Read before the car, which parkCar writes last
+        Car parked = car;
+        return parked == null || table == null || parkedEpoch == table.getEpoch() ? parked : null; // Cars parked before a reset have left
+    }
+
+    /**
+     * Gets a car that is still recorded in the spot although the car park has been reset since it parked.
+     *
+     * @return the stale car, or null if there is none
+     */
+    Car getStaleCar() {
+        Car parked = car;
+        return parked != null && table != null && epoch != table.getEpoch() ? parked : null;
     }
 
     /**
@@ -53,9 +68,31 @@ public class ParkingSpot {
      * @param car the car to be parked in the spot
      */
     public void parkCar(Car car) {
+        this.car = null; // A car left from before a reset must never be seen with the new epoch
+        this.epoch = table == null ? 0 : table.getEpoch();
         this.car = car; // Set the car for the spot
     }
 
+    /**
+     * Gets the position of the spot in its car park's slot table.
+     *
+     * @return the slot, or -1 if the spot is not in a car park
+     */
+    int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Sets the slot table the spot is in and its position there.
+     *
+     * @param table the car park's slot table, or null when the spot leaves the car park
+     * @param slot the slot, or -1 when the spot leaves the car park
+     */
+    void setSlot(SpotSlotTable table, int slot) {
+        this.table = table;
+        this.slot = slot;
+    }
+
     /**
      * Removes the car from the parking spot, making it vacant.
      */
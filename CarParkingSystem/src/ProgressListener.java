@@ -0,0 +1,17 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+/**
+ * Told how far a long-running car park operation has got.
+ */
+public interface ProgressListener {
+    /**
+     * Called as the operation advances.
+     *
+     * @param done the number of items processed so far
+     * @param total the number of items to process
+     */
+    void progress(long done, long total);
+}
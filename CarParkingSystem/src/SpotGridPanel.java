@@ -0,0 +1,317 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+import java.awt.Color;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.swing.JComponent;
+import javax.swing.JScrollPane;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+
+/**
+ * Draws every spot of a car park as a cell of one component, instead of one button per spot.
+ * Only the cells inside the clip are painted, and a change to one spot repaints only its cell,
+ * so a car park of many thousands of spots stays smooth. Put it in a JScrollPane to scroll;
+ * Ctrl + mouse wheel zooms.
+ */
+public final class SpotGridPanel extends JComponent implements Scrollable {
+    private static final int CELL_WIDTH = 110; // Cell size at zoom 1
+    private static final int CELL_HEIGHT = 56;
+    private static final int GAP = 6; // Space around cells at zoom 1
+    private static final double MIN_ZOOM = 0.25;
+    private static final double MAX_ZOOM = 4.0;
+    private static final Color VACANT_COLOR = Color.LIGHT_GRAY;
+    private static final Color OCCUPIED_COLOR = Color.YELLOW;
+
+    private final CarPark carPark;
+    private final List<String> spotIds = new ArrayList<>(); // Spots in display order
+    private final Map<String, Integer> cellIndex = new HashMap<>(); // Spot ID to its position in spotIds
+    private final Consumer<String> clickHandler; // Called with the ID of a clicked spot
+    private double zoom = 1.0;
+
+    /**
+     * Constructs a SpotGridPanel showing the current spots of a car park.
+     *
+     * @param carPark the car park to draw
+     * @param clickHandler called with the spot ID when a cell is clicked
+     */
+    public SpotGridPanel(CarPark carPark, Consumer<String> clickHandler) {
+        this.carPark = carPark;
+        this.clickHandler = clickHandler;
+        for (String spotId : carPark.getSpots().keySet()) {
+            cellIndex.put(spotId, spotIds.size());
+            spotIds.add(spotId);
+        }
+        setOpaque(true);
+        setBackground(Color.BLUE);
+
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                String spotId = spotAt(e.getPoint());
+                if (spotId != null && SwingUtilities.isLeftMouseButton(e)) {
+                    clickHandler.accept(spotId);
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                if (e.isControlDown()) {
+                    setZoom(zoom * Math.pow(1.1, -e.getPreciseWheelRotation()));
+                } else {
+                    // A wheel listener here would otherwise stop the scroll pane from scrolling
+                    Container scrollPane = SwingUtilities.getAncestorOfClass(JScrollPane.class, SpotGridPanel.this);
+                    if (scrollPane != null) {
+                        scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(SpotGridPanel.this, e, scrollPane));
+                    }
+                }
+            }
+        };
+        addMouseListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    /**
+     * Adds a cell for a new spot at the end of the grid.
+     *
+     * @param spotId the spot ID
+     */
+    public void addSpot(String spotId) {
+        if (cellIndex.putIfAbsent(spotId, spotIds.size()) == null) {
+            spotIds.add(spotId);
+            revalidate(); // The grid may need another row
+            repaint(cellBounds(spotIds.size() - 1));
+        }
+    }
+
+    /**
+     * Removes the cell of a deleted spot. The cells after it move up one place.
+     *
+     * @param spotId the spot ID
+     */
+    public void removeSpot(String spotId) {
+        Integer index = cellIndex.remove(spotId);
+        if (index != null) {
+            spotIds.remove((int) index);
+            for (int i = index; i < spotIds.size(); i++) {
+                cellIndex.put(spotIds.get(i), i);
+            }
+            revalidate();
+            repaint(); // Every cell from the removed one on has moved
+        }
+    }
+
+    /**
+     * Repaints the cell of a spot whose state changed.
+     *
+     * @param spotId the spot ID
+     */
+    public void spotChanged(String spotId) {
+        Integer index = cellIndex.get(spotId);
+        if (index != null) {
+            repaint(cellBounds(index));
+        }
+    }
+
+    /**
+     * Returns the ID of the spot drawn at a point.
+     *
+     * @param point a point in this component
+     * @return the spot ID, or null if the point is between or past the cells
+     */
+    public String spotAt(Point point) {
+        int stepX = step(CELL_WIDTH);
+        int stepY = step(CELL_HEIGHT);
+        int gap = gap();
+        int column = (point.x - gap) / stepX;
+        int row = (point.y - gap) / stepY;
+        if (point.x < gap || point.y < gap || column >= columns()
+                || (point.x - gap) % stepX >= stepX - gap || (point.y - gap) % stepY >= stepY - gap) {
+            return null;
+        }
+        int index = row * columns() + column;
+        return index < spotIds.size() ? spotIds.get(index) : null;
+    }
+
+    /**
+     * Sets the zoom factor, keeping it between a quarter and four times the normal size.
+     *
+     * @param zoom the zoom factor, 1 for normal size
+     */
+    public void setZoom(double zoom) {
+        double clamped = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+        if (clamped != this.zoom) {
+            this.zoom = clamped;
+            revalidate();
+            repaint();
+        }
+    }
+
+    /**
+     * Returns the zoom factor.
+     *
+     * @return the zoom factor, 1 for normal size
+     */
+    public double getZoom() {
+        return zoom;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        // Paint only the rows and columns that intersect the clip
+        int stepX = step(CELL_WIDTH);
+        int stepY = step(CELL_HEIGHT);
+        int columns = columns();
+        int firstRow = Math.max(0, (clip.y - gap()) / stepY);
+        int lastRow = (clip.y + clip.height) / stepY;
+        int firstColumn = Math.max(0, (clip.x - gap()) / stepX);
+        int lastColumn = Math.min(columns - 1, (clip.x + clip.width) / stepX);
+
+        Font idFont = getFont().deriveFont(Font.BOLD, (float) (12 * zoom));
+        Font detailFont = getFont().deriveFont(Font.PLAIN, (float) (11 * zoom));
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int index = row * columns + column;
+                if (index >= spotIds.size()) {
+                    return;
+                }
+                paintCell(g, index, idFont, detailFont);
+            }
+        }
+    }
+
+    /**
+     * Paints one cell: its colour shows whether the spot is taken, and when there is room the
+     * spot ID and the parked car are written on it.
+     *
+     * @param g the graphics context
+     * @param index the cell position
+     * @param idFont the font for the spot ID
+     * @param detailFont the font for the car details
+     */
+    private void paintCell(Graphics g, int index, Font idFont, Font detailFont) {
+        String spotId = spotIds.get(index);
+        ParkingSpot spot = carPark.findSpot(spotId);
+        Car car = spot == null ? null : spot.getCar(); // Read once, the spot may change while painting
+        Rectangle cell = cellBounds(index);
+        g.setColor(car == null ? VACANT_COLOR : OCCUPIED_COLOR);
+        g.fillRect(cell.x, cell.y, cell.width, cell.height);
+        g.setColor(Color.DARK_GRAY);
+        g.drawRect(cell.x, cell.y, cell.width - 1, cell.height - 1);
+
+        if (zoom < 0.5) {
+            return; // Too small for text to be readable
+        }
+        g.setColor(Color.BLACK);
+        g.setFont(idFont);
+        FontMetrics metrics = g.getFontMetrics();
+        int x = cell.x + (int) (4 * zoom);
+        int y = cell.y + metrics.getAscent() + (int) (2 * zoom);
+        g.drawString(spotId, x, y);
+        y += metrics.getHeight();
+
+        g.setFont(detailFont);
+        metrics = g.getFontMetrics();
+        if (car == null) {
+            g.drawString("Vacant", x, y);
+        } else if (zoom >= 0.75) {
+            g.drawString("Registration: " + car.getRegistrationNumber(), x, y);
+            g.drawString(car.getMake() + " " + car.getYear(), x, y + metrics.getHeight());
+        } else {
+            g.drawString(car.getRegistrationNumber(), x, y);
+        }
+    }
+
+    /**
+     * Returns the area of a cell.
+     *
+     * @param index the cell position
+     * @return the bounds of the cell in this component
+     */
+    private Rectangle cellBounds(int index) {
+        int columns = columns();
+        return new Rectangle(gap() + (index % columns) * step(CELL_WIDTH), gap() + (index / columns) * step(CELL_HEIGHT),
+                scaled(CELL_WIDTH), scaled(CELL_HEIGHT));
+    }
+
+    /**
+     * Returns how many cells fit across, from the viewport width when in a scroll pane.
+     *
+     * @return the number of columns, at least 1
+     */
+    private int columns() {
+        Container parent = getParent();
+        int width = parent instanceof JViewport ? parent.getWidth() : getWidth();
+        return Math.max(1, (width - gap()) / step(CELL_WIDTH));
+    }
+
+    private int scaled(int size) {
+        return Math.max(1, (int) Math.round(size * zoom));
+    }
+
+    private int gap() {
+        return scaled(GAP);
+    }
+
+    private int step(int size) {
+        return scaled(size) + gap();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        int columns = columns();
+        int rows = (spotIds.size() + columns - 1) / columns;
+        return new Dimension(gap() + columns * step(CELL_WIDTH), gap() + rows * step(CELL_HEIGHT));
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(5 * step(CELL_WIDTH) + gap(), 3 * step(CELL_HEIGHT) + gap());
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? step(CELL_HEIGHT) : step(CELL_WIDTH);
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true; // Cells wrap to the width, so there is only vertical scrolling
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+    }
+}
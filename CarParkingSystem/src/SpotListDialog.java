@@ -0,0 +1,183 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.FlowLayout;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.regex.Pattern;
+
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.RowFilter;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
+
+/**
+ * Dialog listing every parking spot in a sortable, filterable table. The table only renders
+ * the rows in view, so it opens immediately even for very large car parks. The rows and the
+ * counts come from one snapshot, so they always agree with each other.
+ * <p>
+ * Opened on a car park, the dialog is live: each frame's changes move it on to a fresh snapshot
+ * and a ticker keeps the parking times counting. Opened on a snapshot, it is a still copy of that
+ * moment and says so in its title.
+ */
+public final class SpotListDialog extends JDialog {
+    private static final int TICK_MILLIS = 1000; // How often the visible parking times are redrawn
+
+    private final JLabel summaryLabel = new JLabel();
+    private SpotTableModel model;
+    private JTable table;
+    private CarPark carPark; // Followed by a live dialog, null for a still copy
+    private CoalescingDispatcher dispatcher; // Brings the car park's changes to the EDT, null for a still copy
+    private Timer ticker; // Repaints the visible rows so the parking times keep counting, null for a still copy
+
+    /**
+     * Constructs a live dialog for a car park.
+     *
+     * @param owner the frame that owns the dialog
+     * @param carPark the car park to list
+     */
+    public SpotListDialog(JFrame owner, CarPark carPark) {
+        super(owner, "List of Parking Spots", false);
+        this.carPark = carPark;
+        dispatcher = new CoalescingDispatcher(this::carParkChanged); // Batches reach the EDT after this constructor
+        carPark.addCarParkListener(dispatcher); // Before the snapshot is taken, so no change is missed
+        layOut(owner, carPark.snapshot());
+        ticker = new Timer(TICK_MILLIS, e -> table.repaint());
+        ticker.start();
+    }
+
+    /**
+     * Constructs a dialog showing a snapshot of a car park as it was taken.
+     *
+     * @param owner the frame that owns the dialog
+     * @param snapshot the snapshot to list
+     */
+    public SpotListDialog(JFrame owner, CarParkSnapshot snapshot) {
+        super(owner, "List of Parking Spots (as of " + LocalTime.now().truncatedTo(ChronoUnit.SECONDS) + ")", false);
+        layOut(owner, snapshot);
+    }
+
+    /**
+     * Lays out the table, the filter and the counts over a snapshot.
+     *
+     * @param owner the frame that owns the dialog
+     * @param snapshot the snapshot to list
+     */
+    private void layOut(JFrame owner, CarParkSnapshot snapshot) {
+        model = new SpotTableModel(snapshot);
+        table = new JTable(model);
+        TableRowSorter<SpotTableModel> sorter = new TableRowSorter<>(model);
+        table.setRowSorter(sorter);
+        table.setFillsViewportHeight(true);
+        table.setDefaultRenderer(Duration.class, new ParkingTimeRenderer());
+
+        // Filter on the text columns; the parking time is left out so filtering never computes it
+        JTextField filterField = new JTextField(20);
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            private void applyFilter() {
+                String text = filterField.getText().trim();
+                sorter.setRowFilter(text.isEmpty() ? null : RowFilter.regexFilter("(?i)" + Pattern.quote(text),
+                        SpotTableModel.SPOT, SpotTableModel.STATUS, SpotTableModel.REGISTRATION,
+                        SpotTableModel.MAKE, SpotTableModel.MODEL));
+            }
+        });
+
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel("Filter:"));
+        filterPanel.add(filterField);
+
+        JPanel summaryPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        summaryPanel.add(summaryLabel);
+        showCounts(snapshot);
+
+        setLayout(new BorderLayout());
+        add(filterPanel, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(summaryPanel, BorderLayout.SOUTH);
+        setSize(800, 500);
+        setLocationRelativeTo(owner);
+    }
+
+    /**
+     * Moves the rows and counts on to a fresh snapshot. Runs on the Event Dispatch Thread.
+     *
+     * @param changes the changes made since the last update
+     */
+    private void carParkChanged(CoalescingDispatcher.Changes changes) {
+        if (carPark == null) {
+            return; // Disposed since the batch was scheduled
+        }
+        CarParkSnapshot snapshot = carPark.snapshot(); // Holds these changes and perhaps later ones, which come again
+        model.update(snapshot, changes);
+        showCounts(snapshot);
+    }
+
+    /**
+     * Shows the spot counts of a snapshot under the table.
+     *
+     * @param snapshot the snapshot the rows come from
+     */
+    private void showCounts(CarParkSnapshot snapshot) {
+        summaryLabel.setText("Total spots: " + snapshot.getTotalSpots()
+                + "    Occupied spots: " + snapshot.getOccupiedSpots()
+                + "    Available spots: " + snapshot.getUnoccupiedSpots());
+    }
+
+    /**
+     * Stops following the car park when the dialog goes away.
+     */
+    @Override
+    public void dispose() {
+        if (carPark != null) {
+            carPark.removeCarParkListener(dispatcher);
+            ticker.stop();
+            carPark = null;
+        }
+        super.dispose();
+    }
+
+    /**
+     * Renders a parking time as hours, minutes and seconds.
+     */
+    private static class ParkingTimeRenderer extends DefaultTableCellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            String text = "";
+            if (value instanceof Duration duration) {
+                text = duration.toHours() + " hours " + duration.toMinutes() % 60 + " minutes "
+                        + duration.getSeconds() % 60 + " seconds";
+            }
+            return super.getTableCellRendererComponent(table, text, isSelected, hasFocus, row, column);
+        }
+    }
+}
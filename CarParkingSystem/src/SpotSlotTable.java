@@ -0,0 +1,577 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+import util.IdCodec;
+import util.IntIntOpenHashMap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Dense, array-backed store of the spots of a car park. A spot whose ID has the packed form
+ * (see {@link IdCodec}) lives in the slot numbered by its code, so finding it is one array read;
+ * other spots take slots after the 26,000 codes. Slots are grouped in chunks of 64, each kept as
+ * parallel columns: the spot in each slot, the car parked there, the epoch it parked in and bit
+ * sets of the slots in use and occupied, so scans walk contiguous arrays and skip a chunk of
+ * empty slots per word. Cars are also indexed by the packed code of their registration number.
+ * <p>
+ * {@link #reset()} empties the table in constant time by starting a new epoch: a car only counts
+ * as parked if it parked in the current epoch. Cars from earlier epochs stay in the columns and
+ * the plate index, invisible to lookups, until {@link #purge} clears them.
+ * <p>
+ * {@link #snapshot()} shares the chunks with an immutable {@link CarParkSnapshot}; a chunk shared
+ * with a snapshot is copied before its next change, so taking a snapshot costs one pointer per
+ * chunk and later changes only copy the chunks they touch.
+ * <p>
+ * Changes take a short write lock. Lookups read optimistically and only take the read lock if a
+ * change overlapped them, so lookups from many threads do not block each other.
+ */
+public class SpotSlotTable {
+    static final int CHUNK_SLOTS = 64; // Slots per chunk, one word of each bit set
+
+    private Chunk[] chunks = new Chunk[1]; // Chunk holding each run of 64 slots, null if never used
+    private int version; // Advanced by each snapshot; chunks of older versions are shared and copied before changing
+    private volatile int count; // Number of spots
+    private volatile int epoch; // Current epoch, advanced by each reset
+    private volatile int occupiedCount; // Number of cars parked in the current epoch
+    private int[] freeSlots = new int[16]; // Stack of freed slots above the packed codes
+    private int freeCount; // Entries in freeSlots
+    private int nextOtherSlot = IdCodec.SPOT_ID_CODES; // Lowest slot above the packed codes never handed out
+    private Map<String, ParkingSpot> otherSpots = new ConcurrentHashMap<>(); // Spots whose ID cannot be packed
+    private IntIntOpenHashMap plateSlots = new IntIntOpenHashMap(); // Plate code to slot of the spot the car is in
+    private Map<String, ParkingSpot> otherPlates = new ConcurrentHashMap<>(); // Spots of cars whose plate cannot be packed
+    private StampedLock lock = new StampedLock();
+    private Map<String, ParkingSpot> view = new SpotMapView();
+
+    /**
+     * Adds a spot, giving it a slot.
+     *
+     * @param spot the spot
+     * @return false if a spot with the same ID is already in the table
+     */
+    public boolean add(ParkingSpot spot) {
+        long stamp = lock.writeLock();
+        try {
+            return insert(spot);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes a vacant spot, freeing its slot.
+     *
+     * @param spot the spot
+     */
+    public void remove(ParkingSpot spot) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = spot.getSlot();
+            Chunk chunk = writable(slot);
+            chunk.spots[slot & (CHUNK_SLOTS - 1)] = null;
+            chunk.present &= ~(1L << slot);
+            spot.setSlot(null, -1);
+            count--;
+            if (slot >= IdCodec.SPOT_ID_CODES) {
+                otherSpots.remove(spot.getId());
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                }
+                freeSlots[freeCount++] = slot;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Records that a car has parked in a spot: fills the car, epoch and occupancy columns of its
+     * slot and indexes the car by registration number.
+     *
+     * @param spot the spot
+     * @param car the car now parked in it
+     */
+    public void occupy(ParkingSpot spot, Car car) {
+        int plateCode = IdCodec.encodePlate(car.getRegistrationNumber());
+        long stamp = lock.writeLock();
+        try {
+            int slot = spot.getSlot();
+            Chunk chunk = writable(slot);
+            chunk.cars[slot & (CHUNK_SLOTS - 1)] = car;
+            chunk.epochs[slot & (CHUNK_SLOTS - 1)] = epoch;
+            chunk.occupied |= 1L << slot;
+            if (plateCode == IdCodec.NOT_ENCODABLE) {
+                otherPlates.put(car.getRegistrationNumber(), spot);
+            } else {
+                plateSlots.put(plateCode, slot);
+            }
+            occupiedCount++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Records that a car parked in the current epoch has left a spot.
+     *
+     * @param spot the spot
+     * @param car the car that was parked in it
+     */
+    public void vacate(ParkingSpot spot, Car car) {
+        long stamp = lock.writeLock();
+        try {
+            clear(spot, car);
+            occupiedCount--;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Clears a car left in a spot from an earlier epoch.
+     *
+     * @param spot the spot
+     * @param car the stale car
+     * @return false if the slot no longer holds that car from an earlier epoch
+     */
+    public boolean purge(ParkingSpot spot, Car car) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = spot.getSlot();
+            if (slot < 0) {
+                return false;
+            }
+            Chunk chunk = chunks[slot / CHUNK_SLOTS];
+            int i = slot & (CHUNK_SLOTS - 1);
+            if (chunk.cars[i] != car || chunk.epochs[i] == epoch) {
+                return false;
+            }
+            clear(spot, car);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Empties the table of cars in constant time by starting a new epoch. The cars parked so far
+     * become stale: lookups no longer see them and they are not counted, but they stay in the
+     * columns until purged.
+     */
+    public void reset() {
+        long stamp = lock.writeLock();
+        try {
+            epoch++;
+            occupiedCount = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Gets the current epoch.
+     *
+     * @return the number of resets so far
+     */
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Takes an immutable snapshot of every spot and the car parked in it. The chunks are shared
+     * with the snapshot rather than copied, so this costs one pointer per 64 slots.
+     *
+     * @return the snapshot
+     */
+    public CarParkSnapshot snapshot() {
+        long stamp = lock.writeLock();
+        try {
+            version++; // Every chunk now belongs to the snapshot, changes copy it first
+            return new CarParkSnapshot(chunks.clone(), epoch, count, occupiedCount);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Finds a spot by ID. For a packed ID this is a single array read, with no String hashing.
+     *
+     * @param spotId the ID of the spot
+     * @return the spot, or null if there is none
+     */
+    public ParkingSpot find(String spotId) {
+        int slot = IdCodec.encodeSpotId(spotId);
+        if (slot == IdCodec.NOT_ENCODABLE) {
+            return otherSpots.get(spotId);
+        }
+        long stamp = lock.tryOptimisticRead();
+        ParkingSpot spot = slotAt(slot);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                spot = slotAt(slot);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return spot;
+    }
+
+    /**
+     * Finds the spot a car is parked in by registration number. For a packed registration number
+     * this hashes one int and allocates nothing.
+     *
+     * @param regNumber the registration number
+     * @return the spot, or null if the car is not parked
+     */
+    public ParkingSpot findByPlate(String regNumber) {
+        int plateCode = IdCodec.encodePlate(regNumber);
+        if (plateCode == IdCodec.NOT_ENCODABLE) {
+            ParkingSpot spot = otherPlates.get(regNumber);
+            return spot != null && spot.isOccupied() ? spot : null; // The spot may only hold a stale car
+        }
+        long stamp = lock.tryOptimisticRead();
+        ParkingSpot spot = currentAt(plateSlots.get(plateCode));
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                spot = currentAt(plateSlots.get(plateCode));
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return spot;
+    }
+
+    /**
+     * Gets the number of spots.
+     *
+     * @return the number of spots
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the number of cars parked in the current epoch, kept in step with the occupancy column.
+     *
+     * @return the number of occupied spots
+     */
+    public int getOccupiedCount() {
+        return occupiedCount;
+    }
+
+    /**
+     * Gets the number of cars indexed by registration number, including stale cars not yet purged.
+     *
+     * @return the number of indexed cars
+     */
+    public int getPlateCount() {
+        long stamp = lock.readLock();
+        try {
+            return plateSlots.size() + otherPlates.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts the slots occupied in the current epoch from the occupancy and epoch columns.
+     *
+     * @return the number of occupied spots
+     */
+    public int countOccupied() {
+        return occupiedSpots(true).size();
+    }
+
+    /**
+     * Collects the occupied spots by walking the occupancy column, skipping vacant slots 64 at a time.
+     *
+     * @return the spots holding a car when the call was made
+     */
+    public List<ParkingSpot> occupiedSpots() {
+        return occupiedSpots(true);
+    }
+
+    /**
+     * Collects the spots still holding a car from an earlier epoch, which are waiting to be purged.
+     *
+     * @return the spots holding a stale car when the call was made
+     */
+    public List<ParkingSpot> staleSpots() {
+        return occupiedSpots(false);
+    }
+
+    /**
+     * Gets a read-only map view of the spots by ID. Lookups go through {@link #find}; iteration
+     * runs in slot order and is weakly consistent, like that of a concurrent map.
+     *
+     * @return the map view
+     */
+    public Map<String, ParkingSpot> asMap() {
+        return view;
+    }
+
+    /**
+     * Gets the spot in a slot, tolerating a slot read while a change was under way.
+     *
+     * @param slot the slot, or {@link IntIntOpenHashMap#NO_VALUE}
+     * @return the spot, or null if the slot is out of range or free
+     */
+    private ParkingSpot slotAt(int slot) {
+        Chunk chunk = chunkAt(slot);
+        return chunk == null ? null : chunk.spots[slot & (CHUNK_SLOTS - 1)];
+    }
+
+    /**
+     * Gets the spot in a slot if it holds a car parked in the current epoch, tolerating a slot
+     * read while a change was under way.
+     *
+     * @param slot the slot, or {@link IntIntOpenHashMap#NO_VALUE}
+     * @return the spot, or null if the slot is out of range, free or holds no current car
+     */
+    private ParkingSpot currentAt(int slot) {
+        Chunk chunk = chunkAt(slot);
+        return chunk != null && chunk.holdsCar(slot, epoch) ? chunk.spots[slot & (CHUNK_SLOTS - 1)] : null;
+    }
+
+    /**
+     * Gets the chunk holding a slot.
+     *
+     * @param slot the slot, or {@link IntIntOpenHashMap#NO_VALUE}
+     * @return the chunk, or null if the slot is out of range or its chunk was never used
+     */
+    private Chunk chunkAt(int slot) {
+        Chunk[] chunks = this.chunks;
+        return slot >= 0 && slot / CHUNK_SLOTS < chunks.length ? chunks[slot / CHUNK_SLOTS] : null;
+    }
+
+    /**
+     * Collects the occupied spots whose car parked in the current epoch, or those whose car did not.
+     *
+     * @param current true for the spots of current cars, false for those of stale cars
+     * @return the spots
+     */
+    private List<ParkingSpot> occupiedSpots(boolean current) {
+        long stamp = lock.readLock();
+        try {
+            List<ParkingSpot> result = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                if (chunk == null) {
+                    continue;
+                }
+                for (long word = chunk.occupied; word != 0; word &= word - 1) {
+                    int i = Long.numberOfTrailingZeros(word);
+                    if ((chunk.epochs[i] == epoch) == current) {
+                        result.add(chunk.spots[i]);
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Puts a spot in its slot, or in a free slot after the packed codes. Called under the write lock.
+     *
+     * @param spot the spot
+     * @return false if a spot with the same ID is already in the table
+     */
+    private boolean insert(ParkingSpot spot) {
+        int slot = IdCodec.encodeSpotId(spot.getId());
+        if (slot == IdCodec.NOT_ENCODABLE) {
+            if (otherSpots.putIfAbsent(spot.getId(), spot) != null) {
+                return false;
+            }
+            slot = freeCount > 0 ? freeSlots[--freeCount] : nextOtherSlot++;
+        } else if (slotAt(slot) != null) {
+            return false;
+        }
+        Chunk chunk = writable(slot);
+        chunk.spots[slot & (CHUNK_SLOTS - 1)] = spot;
+        chunk.present |= 1L << slot;
+        spot.setSlot(this, slot);
+        count++;
+        return true;
+    }
+
+    /**
+     * Empties a slot's car and occupancy columns and drops the car from the plate index, unless
+     * the car has parked elsewhere since. Called under the write lock.
+     *
+     * @param spot the spot
+     * @param car the car parked in it
+     */
+    private void clear(ParkingSpot spot, Car car) {
+        int slot = spot.getSlot();
+        Chunk chunk = writable(slot);
+        chunk.cars[slot & (CHUNK_SLOTS - 1)] = null;
+        chunk.occupied &= ~(1L << slot);
+        int plateCode = IdCodec.encodePlate(car.getRegistrationNumber());
+        if (plateCode == IdCodec.NOT_ENCODABLE) {
+            otherPlates.remove(car.getRegistrationNumber(), spot);
+        } else if (plateSlots.get(plateCode) == slot) {
+            plateSlots.remove(plateCode);
+        }
+    }
+
+    /**
+     * Gets the chunk holding a slot ready to be changed: created if it was never used, and
+     * copied if it is shared with a snapshot. Called under the write lock.
+     *
+     * @param slot the slot
+     * @return the chunk, owned by the table alone
+     */
+    private Chunk writable(int slot) {
+        int index = slot / CHUNK_SLOTS;
+        if (index >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(index + 1, chunks.length * 2));
+        }
+        Chunk chunk = chunks[index];
+        if (chunk == null || chunk.version != version) {
+            chunk = chunk == null ? new Chunk(version) : chunk.copy(version);
+            chunks[index] = chunk;
+        }
+        return chunk;
+    }
+
+    /**
+     * The columns of 64 consecutive slots. Once a snapshot shares a chunk it is never changed again.
+     */
+    static final class Chunk {
+        final ParkingSpot[] spots = new ParkingSpot[CHUNK_SLOTS]; // Spot in each slot, null if free
+        final Car[] cars = new Car[CHUNK_SLOTS]; // Car parked in each slot, null if vacant
+        final int[] epochs = new int[CHUNK_SLOTS]; // Epoch in which the car in each slot parked
+        long present; // Bit i set when slot i holds a spot
+        long occupied; // Bit i set when the spot in slot i holds a car
+        private final int version; // Table version the chunk belongs to
+
+        private Chunk(int version) {
+            this.version = version;
+        }
+
+        /**
+         * Copies the chunk for a later table version.
+         *
+         * @param version the table version
+         * @return the copy
+         */
+        private Chunk copy(int version) {
+            Chunk copy = new Chunk(version);
+            System.arraycopy(spots, 0, copy.spots, 0, CHUNK_SLOTS);
+            System.arraycopy(cars, 0, copy.cars, 0, CHUNK_SLOTS);
+            System.arraycopy(epochs, 0, copy.epochs, 0, CHUNK_SLOTS);
+            copy.present = present;
+            copy.occupied = occupied;
+            return copy;
+        }
+
+        /**
+         * Checks whether a slot holds a car parked in an epoch.
+         *
+         * @param slot the slot, which must be in this chunk
+         * @param epoch the epoch
+         * @return true if the slot is occupied by a car parked in that epoch
+         */
+        boolean holdsCar(int slot, int epoch) {
+            return (occupied & 1L << slot) != 0 && epochs[slot & (CHUNK_SLOTS - 1)] == epoch;
+        }
+    }
+
+    /**
+     * Read-only map of the spots by ID, backed by the table.
+     */
+    private class SpotMapView extends AbstractMap<String, ParkingSpot> {
+        @Override
+        public ParkingSpot get(Object key) {
+            return key instanceof String spotId ? find(spotId) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public Set<Map.Entry<String, ParkingSpot>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<String, ParkingSpot>> iterator() {
+                    return new SlotIterator();
+                }
+
+                @Override
+                public int size() {
+                    return count;
+                }
+            };
+        }
+    }
+
+    /**
+     * Walks the slots in use without locking, skipping slots freed since the walk began.
+     */
+    private class SlotIterator implements Iterator<Map.Entry<String, ParkingSpot>> {
+        private ParkingSpot next = advance(0); // Next spot to return, null when done
+        private int nextSlot; // Slot after the one next came from
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, ParkingSpot> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            ParkingSpot spot = next;
+            next = advance(nextSlot);
+            return new AbstractMap.SimpleImmutableEntry<>(spot.getId(), spot);
+        }
+
+        /**
+         * Finds the first spot at or after a slot.
+         *
+         * @param from the slot to start at
+         * @return the spot, or null if there are no more
+         */
+        private ParkingSpot advance(int from) {
+            Chunk[] chunks = SpotSlotTable.this.chunks;
+            for (int c = from / CHUNK_SLOTS; c < chunks.length; c++) {
+                Chunk chunk = chunks[c];
+                if (chunk == null) {
+                    continue;
+                }
+                long word = chunk.present & (c == from / CHUNK_SLOTS ? -1L << from : -1L);
+                for (; word != 0; word &= word - 1) {
+                    int i = Long.numberOfTrailingZeros(word);
+                    ParkingSpot spot = chunk.spots[i];
+                    if (spot != null) { // May have been removed, or not yet be visible, in concurrent mode
+                        nextSlot = c * CHUNK_SLOTS + i + 1;
+                        return spot;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model over a snapshot of a car park, so every row shows the same moment however busy the
+ * gates are. The elapsed parking time is only computed for the cells being painted (or compared,
+ * while sorting by that column). A live view moves the model on to newer snapshots with
+ * {@link #update}.
+ */
+public class SpotTableModel extends AbstractTableModel {
+    static final int SPOT = 0;
+    static final int STATUS = 1;
+    static final int REGISTRATION = 2;
+    static final int MAKE = 3;
+    static final int MODEL = 4;
+    static final int YEAR = 5;
+    static final int PARKING_TIME = 6;
+
+    private static final String[] COLUMNS = {"Spot", "Status", "Registration", "Make", "Model", "Year", "Parking time"};
+
+    private String[] spotIds; // ID of the spot in each row
+    private Car[] cars; // Car parked in the spot of each row, null if vacant
+    private Map<String, Integer> rows; // Row of each spot ID, built on the first update
+
+    /**
+     * Constructs a SpotTableModel over a snapshot of the current spots of a car park.
+     *
+     * @param carPark the car park
+     */
+    public SpotTableModel(CarPark carPark) {
+        this(carPark.snapshot());
+    }
+
+    /**
+     * Constructs a SpotTableModel over a snapshot of a car park.
+     *
+     * @param snapshot the snapshot, one row per spot
+     */
+    public SpotTableModel(CarParkSnapshot snapshot) {
+        load(snapshot);
+    }
+
+    /**
+     * Moves the model on to a newer snapshot. Spots that only had a car parked or removed are
+     * updated in place; added or deleted spots, or a reset, reload every row.
+     *
+     * @param snapshot the newer snapshot
+     * @param changes the changes made since the previous snapshot, at least
+     */
+    public void update(CarParkSnapshot snapshot, CoalescingDispatcher.Changes changes) {
+        if (changes.isReset() || !changes.getAdded().isEmpty() || !changes.getDeleted().isEmpty()) {
+            load(snapshot);
+            fireTableDataChanged();
+            return;
+        }
+        if (rows == null) {
+            rows = new HashMap<>(spotIds.length * 2);
+            for (int row = 0; row < spotIds.length; row++) {
+                rows.put(spotIds[row], row);
+            }
+        }
+        for (String spotId : changes.getChanged()) {
+            Integer row = rows.get(spotId);
+            if (row != null) {
+                cars[row] = snapshot.getCar(spotId);
+                fireTableRowsUpdated(row, row);
+            }
+        }
+    }
+
+    /**
+     * Fills the rows from a snapshot.
+     *
+     * @param snapshot the snapshot, one row per spot
+     */
+    private void load(CarParkSnapshot snapshot) {
+        spotIds = new String[snapshot.getTotalSpots()];
+        cars = new Car[spotIds.length];
+        rows = null;
+        int[] row = {0};
+        snapshot.forEachSpot((spotId, car) -> {
+            spotIds[row[0]] = spotId;
+            cars[row[0]++] = car;
+        });
+    }
+
+    @Override
+    public int getRowCount() {
+        return spotIds.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return switch (column) {
+            case YEAR -> Integer.class;
+            case PARKING_TIME -> Duration.class;
+            default -> String.class;
+        };
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Car car = cars[row];
+        if (column == SPOT) {
+            return spotIds[row];
+        }
+        if (column == STATUS) {
+            return car == null ? "Vacant" : "Occupied";
+        }
+        if (car == null) {
+            return null;
+        }
+        return switch (column) {
+            case REGISTRATION -> car.getRegistrationNumber();
+            case MAKE -> car.getMake();
+            case MODEL -> car.getModel();
+            case YEAR -> car.getYear();
+            case PARKING_TIME -> Duration.between(car.getParkingTime(), LocalDateTime.now());
+            default -> null;
+        };
+    }
+}
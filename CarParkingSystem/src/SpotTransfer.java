@@ -0,0 +1,161 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+import util.SpotCsv;
+import util.SpotSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+/**
+ * Bulk import and export of the spots of a car park and the cars parked in them, as CSV
+ * (see {@link SpotCsv}) or as a binary snapshot (see {@link SpotSnapshot}). Files are streamed
+ * and spots are added in batches through {@link CarPark#addSpots}, so memory use does not grow
+ * with the size of the file beyond the spots themselves.
+ */
+public class SpotTransfer {
+    private static final int BATCH_SIZE = 4096; // Spots added per batch, and between progress reports
+
+    /**
+     * Prevents instantiation, all methods are static.
+     */
+    private SpotTransfer() {
+    }
+
+    /**
+     * Adds the spots and parked cars listed in a CSV file to a car park. Spots whose ID is
+     * already taken are skipped, as are cars already parked elsewhere.
+     *
+     * @param carPark the car park to add to
+     * @param file the CSV file
+     * @param progress told how many bytes of the file have been read, after each batch
+     * @return the number of spots added
+     * @throws IOException if the file cannot be read or a row is malformed
+     */
+    public static long importCsv(CarPark carPark, Path file, ProgressListener progress) throws IOException {
+        try (SpotCsv.Reader reader = SpotCsv.open(file)) {
+            Batch batch = new Batch(carPark);
+            while (reader.next()) {
+                Car car = null;
+                if (reader.isOccupied()) {
+                    LocalDateTime parkedAt = reader.parkedAt();
+                    car = parkedAt == null
+                            ? new Car(reader.registration(), reader.make(), reader.model(), reader.year())
+                            : new Car(reader.registration(), reader.make(), reader.model(), reader.year(), parkedAt);
+                }
+                if (batch.add(reader.spotId(), car)) {
+                    progress.progress(reader.position(), reader.size());
+                }
+            }
+            batch.flush();
+            progress.progress(reader.size(), reader.size());
+            return batch.added;
+        }
+    }
+
+    /**
+     * Writes every spot of a car park and the car parked in it to a CSV file. The file holds
+     * the car park as it was when the call was made.
+     *
+     * @param carPark the car park
+     * @param file the CSV file, replaced only once the export is complete
+     * @return the number of spots written
+     * @throws IOException if the file cannot be written
+     */
+    public static long exportCsv(CarPark carPark, Path file) throws IOException {
+        CarParkSnapshot snapshot = carPark.snapshot(); // One moment, however long the writing takes
+        try (SpotCsv.Writer writer = SpotCsv.create(file)) {
+            snapshot.forEachSpot((spotId, car) -> {
+                try {
+                    if (car == null) {
+                        writer.vacant(spotId);
+                    } else {
+                        writer.write(spotId, car.getRegistrationNumber(), car.getMake(), car.getModel(),
+                                car.getYear(), car.getParkingTime());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return snapshot.getTotalSpots();
+    }
+
+    /**
+     * Adds the spots and parked cars of a binary snapshot file to a car park. Unlike
+     * {@link CarPark#fromSnapshot}, this adds to a car park that may already have spots, skipping
+     * spots whose ID is taken and cars already parked elsewhere. Records are read straight from
+     * the mapped file; vehicles other than cars leave their spot vacant.
+     *
+     * @param carPark the car park to add to
+     * @param file the snapshot file
+     * @param progress told how many records have been read, after each batch
+     * @return the number of spots added
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static long importSnapshot(CarPark carPark, Path file, ProgressListener progress) throws IOException {
+        try (SpotSnapshot snapshot = SpotSnapshot.open(file)) {
+            Batch batch = new Batch(carPark);
+            for (int i = 0; i < snapshot.size(); i++) {
+                Car car = snapshot.vehicleKind(i) == SpotSnapshot.CAR
+                        ? new Car(snapshot.registration(i), snapshot.make(i), snapshot.model(i),
+                                snapshot.number(i), snapshot.parkedAt(i))
+                        : null;
+                if (batch.add(snapshot.spotId(i), car)) {
+                    progress.progress(i + 1, snapshot.size());
+                }
+            }
+            batch.flush();
+            progress.progress(snapshot.size(), snapshot.size());
+            return batch.added;
+        }
+    }
+
+    /**
+     * Spots waiting to be added to a car park, handed over a full batch at a time.
+     */
+    private static class Batch {
+        private final CarPark carPark;
+        private final String[] spotIds = new String[BATCH_SIZE];
+        private final Car[] cars = new Car[BATCH_SIZE];
+        private int count; // Entries waiting
+        private long added; // Spots added so far
+
+        private Batch(CarPark carPark) {
+            this.carPark = carPark;
+        }
+
+        /**
+         * Queues a spot, adding the batch to the car park once it is full.
+         *
+         * @param spotId the ID of the spot
+         * @param car the car parked in it, or null if it is vacant
+         * @return true if the batch was added to the car park
+         */
+        private boolean add(String spotId, Car car) {
+            spotIds[count] = spotId;
+            cars[count++] = car;
+            if (count < BATCH_SIZE) {
+                return false;
+            }
+            flush();
+            return true;
+        }
+
+        /**
+         * Adds the waiting spots to the car park.
+         */
+        private void flush() {
+            if (count > 0) {
+                added += carPark.addSpots(spotIds, cars, count);
+                count = 0;
+            }
+        }
+    }
+}
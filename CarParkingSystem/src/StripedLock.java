@@ -0,0 +1,117 @@
+/**
+ *
+ * @author
+ * @version 5.2.1
+ */
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared out between keys by hash, so that operations on different keys
+ * rarely contend while memory use stays independent of the number of keys.
+ */
+public class StripedLock {
+    private final ReentrantLock[] stripes; // Power-of-two number of locks
+    private final int mask; // stripes.length - 1, used instead of a modulo
+
+    /**
+     * Constructs a StripedLock with at least the given number of stripes.
+     *
+     * @param minStripes the minimum number of stripes, rounded up to a power of two
+     */
+    public StripedLock(int minStripes) {
+        int size = Integer.highestOneBit(Math.max(1, minStripes - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Constructs a StripedLock sized for the number of available processors.
+     *
+     * @return a new StripedLock
+     */
+    public static StripedLock forAvailableProcessors() {
+        return new StripedLock(Runtime.getRuntime().availableProcessors() * 16);
+    }
+
+    /**
+     * Gets the stripe index guarding a key.
+     *
+     * @param key the key
+     * @return the stripe index
+     */
+    private int stripeFor(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask; // Spread high bits, as HashMap does
+    }
+
+    /**
+     * Locks the stripe guarding a key.
+     *
+     * @param key the key
+     */
+    public void lock(Object key) {
+        stripes[stripeFor(key)].lock();
+    }
+
+    /**
+     * Unlocks the stripe guarding a key.
+     *
+     * @param key the key
+     */
+    public void unlock(Object key) {
+        stripes[stripeFor(key)].unlock();
+    }
+
+    /**
+     * Locks the stripes guarding two keys. Stripes are always taken in index order so that
+     * two threads locking the same pair of keys in opposite order cannot deadlock.
+     *
+     * @param first the first key
+     * @param second the second key
+     */
+    public void lock(Object first, Object second) {
+        int a = stripeFor(first);
+        int b = stripeFor(second);
+        stripes[Math.min(a, b)].lock();
+        if (a != b) {
+            stripes[Math.max(a, b)].lock();
+        }
+    }
+
+    /**
+     * Unlocks the stripes guarding two keys.
+     *
+     * @param first the first key
+     * @param second the second key
+     */
+    public void unlock(Object first, Object second) {
+        int a = stripeFor(first);
+        int b = stripeFor(second);
+        if (a != b) {
+            stripes[Math.max(a, b)].unlock();
+        }
+        stripes[Math.min(a, b)].unlock();
+    }
+
+    /**
+     * Locks every stripe, in index order, so that no operation on any key is under way while they
+     * are held. The cost depends only on the number of stripes.
+     */
+    public void lockAll() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    /**
+     * Unlocks every stripe locked by {@link #lockAll()}.
+     */
+    public void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+}
@@ -11,15 +11,26 @@ public class ParkingSpot {
     private boolean isOccupied;
     private LocalDateTime parkedAt;
     private Vehicle currentVehicle;
+    private final SpotOccupancyListener listener; // Optional, e.g. the owning ParkingService's counters
 
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     public ParkingSpot(int spotNumber, ParkingSpotType type) {
+        this(spotNumber, type, null);
+    }
+
+    public ParkingSpot(int spotNumber, ParkingSpotType type, SpotOccupancyListener listener) {
+        this(spotNumber, type, null, null, listener);
+    }
+
+    // Restores a spot as it was saved, e.g. from a snapshot; the listener is not notified of the restored vehicle
+    public ParkingSpot(int spotNumber, ParkingSpotType type, Vehicle currentVehicle, LocalDateTime parkedAt, SpotOccupancyListener listener) {
         this.spotNumber = spotNumber;
         this.type = type;
-        this.isOccupied = false;
-        this.parkedAt = null;
-        this.currentVehicle = null;
+        this.isOccupied = currentVehicle != null;
+        this.parkedAt = currentVehicle != null ? parkedAt : null;
+        this.currentVehicle = currentVehicle;
+        this.listener = listener;
     }
 
     public void parkVehicle(Vehicle vehicle) {
@@ -30,6 +41,9 @@ public class ParkingSpot {
         this.isOccupied = true;
         this.parkedAt = LocalDateTime.now();
         System.out.println(vehicle.getType() + " has been parked at spot " + spotNumber + " (" + type + ") at " + getFormattedParkedAt());
+        if (listener != null) {
+            listener.spotOccupied(this);
+        }
     }
 
     public void vacateSpot() {
@@ -40,12 +54,19 @@ public class ParkingSpot {
         this.currentVehicle = null;
         this.isOccupied = false;
         this.parkedAt = null;
+        if (listener != null) {
+            listener.spotVacated(this);
+        }
     }
 
     public String getFormattedParkedAt() {
         return parkedAt != null ? parkedAt.format(FORMATTER) : "N/A";
     }
 
+    public LocalDateTime getParkedAt() {
+        return parkedAt;
+    }
+
     public boolean isOccupied() {
         return isOccupied;
     }
@@ -0,0 +1,6 @@
+package domain;
+
+import java.time.LocalDateTime;
+
+// A spot held for a vehicle from one time until another, the end excluded
+public record Reservation(long id, int spotNumber, LocalDateTime from, LocalDateTime to) {}
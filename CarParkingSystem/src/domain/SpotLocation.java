@@ -0,0 +1,12 @@
+package domain;
+
+// Where a spot or an entrance is: the level, the row on the level and the position along the row
+public record SpotLocation(int level, int row, int position) {
+    public static final int LEVEL_DISTANCE = 100; // A ramp between levels, counted in spot widths
+
+    // Walking distance in spot widths: along the row, across the rows, and up or down the ramps
+    public int distanceTo(SpotLocation other) {
+        return Math.abs(level - other.level) * LEVEL_DISTANCE + Math.abs(row - other.row)
+                + Math.abs(position - other.position);
+    }
+}
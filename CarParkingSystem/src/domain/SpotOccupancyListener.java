@@ -0,0 +1,8 @@
+package domain;
+
+// Notified by a ParkingSpot after every change of its occupancy
+public interface SpotOccupancyListener {
+    void spotOccupied(ParkingSpot spot);
+
+    void spotVacated(ParkingSpot spot);
+}
@@ -0,0 +1,18 @@
+package domain;
+
+// The kinds of vehicle a spot can hold, for selecting spots by what is parked in them
+public enum VehicleKind {
+    CAR,
+    TRUCK;
+
+    // Kind of the vehicle, or null if it is of no known kind
+    public static VehicleKind of(Vehicle vehicle) {
+        if (vehicle instanceof Car) {
+            return CAR;
+        }
+        if (vehicle instanceof Truck) {
+            return TRUCK;
+        }
+        return null;
+    }
+}
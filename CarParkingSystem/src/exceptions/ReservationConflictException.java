@@ -0,0 +1,7 @@
+package exceptions;
+
+public class ReservationConflictException extends Exception {
+    public ReservationConflictException(String message) {
+        super(message);
+    }
+}
@@ -4,9 +4,16 @@ import domain.Car;
 import domain.Owner;
 import domain.Truck;
 import domain.ParkingSpot;
+import domain.SpotLocation;
+import exceptions.ParkingFullException;
+import exceptions.ReservationConflictException;
 import service.ParkingService;
+import service.SpotLayout;
+import service.SpotQuery;
 import util.ParkingSpotType;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 
 public class Main {
@@ -49,8 +56,8 @@ public class Main {
 
         // 5. Filter and display available HANDICAPPED spots (using Arrays)
         System.out.println("\nAvailable HANDICAPPED spots:");
-        var handicappedSpots = service.filterParkingSpots(spot ->
-                spot.getType() == ParkingSpotType.HANDICAPPED && !spot.isOccupied()).toArray(ParkingSpot[]::new); // Convert to array
+        var handicappedSpots = service.query(SpotQuery.all().ofType(ParkingSpotType.HANDICAPPED).free()) // Planned against the free bitset
+                .toArray(ParkingSpot[]::new); // Convert to array
         Arrays.stream(handicappedSpots).forEach(spot -> System.out.println("Spot " + spot.getSpotNumber()));
 
         // 6. Park a car in a HANDICAPPED spot and log the time with formatted timestamp
@@ -81,5 +88,50 @@ public class Main {
         System.out.println("\nFiltering spots with Spot Number > 2:");
         var filteredSpots = service.filterParkingSpots(spotObj -> spotObj.getSpotNumber() > 2).toArray(ParkingSpot[]::new); // Convert to array
         Arrays.stream(filteredSpots).forEach(System.out::println); // Using Method Reference
+
+        // 10. Allocating the lowest-numbered free spot of a type
+        System.out.println("\nAllocating a LARGE spot for the truck:");
+        try {
+            var largeSpot = service.allocate(ParkingSpotType.LARGE, truck);
+            System.out.println("Truck allocated Spot " + largeSpot.getSpotNumber());
+            service.release(largeSpot.getSpotNumber()); // Spot becomes available again
+        } catch (ParkingFullException e) {
+            System.err.println(e.getMessage());
+        }
+
+        // 11. Opening and closing an overflow level of LARGE spots while the service runs
+        System.out.println("\nOpening an overflow level:");
+        int firstOverflow = service.addSpots(3, SpotLayout.uniform(ParkingSpotType.LARGE)); // No restart, no array rebuild
+        System.out.println("Spots " + firstOverflow + " to " + (firstOverflow + 2) + " added, "
+                + service.getOccupancy().getFreeSpots(ParkingSpotType.LARGE) + " LARGE spots free");
+        service.removeSpots(firstOverflow, firstOverflow + 2); // Closing the level again
+        System.out.println("Overflow level closed, " + service.getOccupancy().getTotalSpots() + " spots in total");
+
+        // 12. Sending a driver to the nearest free COMPACT spot from an entrance at the far end of the row
+        System.out.println("\nNearest free COMPACT spot to the east entrance:");
+        service.addEntrance("East", new SpotLocation(0, 0, 5));
+        var nearest = service.findNearestFree("East", ParkingSpotType.COMPACT);
+        System.out.println(nearest != null ? "Spot " + nearest.getSpotNumber() + " at " + service.getLocation(nearest.getSpotNumber())
+                : "No COMPACT spot free");
+
+        // 13. Reserving LARGE spots and admitting the truck on arrival, only within its reservation's window
+        System.out.println("\nReserving LARGE spots:");
+        try {
+            var tomorrow = LocalDate.now().plusDays(1).atTime(9, 0);
+            var later = service.reserve(ParkingSpotType.LARGE, tomorrow, tomorrow.plusHours(2));
+            System.out.println("Spot " + later.spotNumber() + " reserved from " + later.from() + " to " + later.to());
+            try {
+                service.admit(later.id(), truck, LocalDateTime.now()); // A day early, turned away
+            } catch (ReservationConflictException e) {
+                System.out.println("Truck turned away: " + e.getMessage());
+            }
+            var now = LocalDateTime.now();
+            var reservation = service.reserve(ParkingSpotType.LARGE, now, now.plusHours(2));
+            System.out.println("Spot " + reservation.spotNumber() + " reserved from " + reservation.from() + " to " + reservation.to());
+            var heldSpot = service.admit(reservation.id(), truck, now); // Straight to the held spot, no search
+            System.out.println("Truck admitted to Spot " + heldSpot.getSpotNumber());
+        } catch (ReservationConflictException e) {
+            System.err.println(e.getMessage());
+        }
     }
 }
@@ -0,0 +1,83 @@
+package service;
+
+import domain.SpotLocation;
+import util.FreeRunTree;
+import util.TwoLevelBitSet;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntFunction;
+
+// The spots of one type laid out as they stand: sorted by level, row and position, with a blank slot wherever the
+// next spot is not the very next position along the same row. A FreeRunTree over the slots then finds the first run
+// of n free spots that really are side by side, and a blank slot is never free, so no run crosses a gap, a row end
+// or a ramp. Laying out sorts the spots, so it is done on the first multi-spot request and again after spots are
+// added.
+final class AdjacentRunIndex {
+    private final int[] slotOfSpot; // Slot of each spot of the type by index, -1 for spots of other types
+    private final int[] spotAtSlot; // Index of the spot in each slot, -1 for the blank slots between rows
+    private final int longest; // Most spots of the type standing side by side, free or not
+    private final FreeRunTree runs;
+
+    // Lays out the spots of the type at indexes below length
+    AdjacentRunIndex(int length, TwoLevelBitSet spots, TwoLevelBitSet free, IntFunction<SpotLocation> locationAt) {
+        int[] indexes = new int[64];
+        int count = 0;
+        for (int i = spots.nextSetBit(0); i >= 0 && i < length; i = spots.nextSetBit(i + 1)) {
+            if (count == indexes.length) {
+                indexes = Arrays.copyOf(indexes, count * 2);
+            }
+            indexes[count++] = i;
+        }
+        SpotLocation[] locations = new SpotLocation[length];
+        Integer[] order = new Integer[count];
+        for (int n = 0; n < count; n++) {
+            order[n] = indexes[n];
+            locations[indexes[n]] = locationAt.apply(indexes[n]);
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> locations[i].level())
+                .thenComparingInt(i -> locations[i].row())
+                .thenComparingInt(i -> locations[i].position())
+                .thenComparingInt(i -> i));
+        slotOfSpot = new int[length];
+        Arrays.fill(slotOfSpot, -1);
+        int[] slots = new int[Math.max(1, 2 * count)]; // At worst a blank slot after every spot
+        int slot = 0;
+        int side = 0; // Spots side by side so far, ending with the previous one
+        int most = 0;
+        SpotLocation previous = null;
+        for (int i : order) {
+            SpotLocation location = locations[i];
+            if (previous != null && !(location.level() == previous.level() && location.row() == previous.row()
+                    && location.position() == previous.position() + 1)) {
+                slots[slot++] = -1;
+                side = 0;
+            }
+            slotOfSpot[i] = slot;
+            slots[slot++] = i;
+            most = Math.max(most, ++side);
+            previous = location;
+        }
+        spotAtSlot = Arrays.copyOf(slots, slot);
+        longest = most;
+        runs = new FreeRunTree(slot);
+        for (int i = free.nextSetBit(0); i >= 0 && i < length; i = free.nextSetBit(i + 1)) {
+            runs.set(slotOfSpot[i], true);
+        }
+    }
+
+    int longest() {
+        return longest;
+    }
+
+    // Indexes of the first run of length free spots standing side by side, in position order, or null if there is none
+    int[] firstFreeRun(int length) {
+        int start = runs.findFirstRun(length);
+        return start < 0 ? null : Arrays.copyOfRange(spotAtSlot, start, start + length);
+    }
+
+    // Follows a spot of the type being parked in, left or removed
+    void setFree(int index, boolean free) {
+        runs.set(slotOfSpot[index], free);
+    }
+}
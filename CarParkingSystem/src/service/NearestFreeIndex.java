@@ -0,0 +1,80 @@
+package service;
+
+import domain.SpotLocation;
+import util.ParkingSpotType;
+import util.TwoLevelBitSet;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+// The spots of each type ranked by walking distance from one entrance, with a bitset over the ranks marking the free
+// ones. The nearest free spot of a type is the first set bit, found through the bitset summary in well under a
+// microsecond however many spots there are, and parking or leaving flips a single bit. Ranking sorts the spots, so
+// it is done on the first search and again only when spots are added or removed.
+final class NearestFreeIndex {
+    private final SpotLocation entrance;
+    private int[][] spotsByRank; // Per ParkingSpotType, the index of the spot at each rank, nearest first; null until built
+    private int[] rankOfSpot; // Rank of each spot among the spots of its type
+    private TwoLevelBitSet[] freeByRank; // Per ParkingSpotType, bit r set when the spot at rank r is free
+
+    NearestFreeIndex(SpotLocation entrance) {
+        this.entrance = entrance;
+    }
+
+    boolean isBuilt() {
+        return spotsByRank != null;
+    }
+
+    // Ranks the spots at indexes below length, replacing any earlier ranking; ties go to the lower index
+    void build(int length, TwoLevelBitSet[] spotsByType, TwoLevelBitSet[] freeByType, IntFunction<SpotLocation> locationAt) {
+        ParkingSpotType[] types = ParkingSpotType.values();
+        int[][] ranked = new int[types.length][];
+        int[] ranks = new int[length];
+        TwoLevelBitSet[] free = new TwoLevelBitSet[types.length];
+        for (ParkingSpotType type : types) {
+            TwoLevelBitSet spots = spotsByType[type.ordinal()];
+            long[] keys = new long[64];
+            int count = 0;
+            for (int i = spots.nextSetBit(0); i >= 0 && i < length; i = spots.nextSetBit(i + 1)) {
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count * 2);
+                }
+                keys[count++] = (long) locationAt.apply(i).distanceTo(entrance) << 32 | i; // Sorts by distance, then index
+            }
+            Arrays.sort(keys, 0, count);
+            int[] byRank = new int[count];
+            TwoLevelBitSet freeRanks = new TwoLevelBitSet(count);
+            for (int r = 0; r < count; r++) {
+                int i = (int) keys[r];
+                byRank[r] = i;
+                ranks[i] = r;
+                if (freeByType[type.ordinal()].get(i)) {
+                    freeRanks.set(r);
+                }
+            }
+            ranked[type.ordinal()] = byRank;
+            free[type.ordinal()] = freeRanks;
+        }
+        spotsByRank = ranked;
+        rankOfSpot = ranks;
+        freeByRank = free;
+    }
+
+    // Index of the nearest free spot of the type, or -1 if none is free
+    int nearestFree(ParkingSpotType type) {
+        int rank = freeByRank[type.ordinal()].nextSetBit(0);
+        return rank < 0 ? -1 : spotsByRank[type.ordinal()][rank];
+    }
+
+    // Follows a spot being parked in or left; nothing to do until the ranking is built
+    void setFree(ParkingSpotType type, int index, boolean free) {
+        if (!isBuilt()) {
+            return;
+        }
+        if (free) {
+            freeByRank[type.ordinal()].set(rankOfSpot[index]);
+        } else {
+            freeByRank[type.ordinal()].clear(rankOfSpot[index]);
+        }
+    }
+}
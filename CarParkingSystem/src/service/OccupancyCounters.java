@@ -0,0 +1,73 @@
+package service;
+
+import domain.ParkingSpot;
+import domain.SpotOccupancyListener;
+import util.ParkingSpotType;
+
+// Occupied/total counters per ParkingSpotType and overall, updated on every occupancy change
+public class OccupancyCounters implements SpotOccupancyListener {
+    private final int[] totalByType = new int[ParkingSpotType.values().length];
+    private final int[] occupiedByType = new int[ParkingSpotType.values().length];
+    private int total;
+    private int occupied;
+
+    void spotAdded(ParkingSpotType type) {
+        totalByType[type.ordinal()]++;
+        total++;
+    }
+
+    // For free spots taken out of service
+    void spotRemoved(ParkingSpotType type) {
+        totalByType[type.ordinal()]--;
+        total--;
+    }
+
+    @Override
+    public void spotOccupied(ParkingSpot spot) {
+        spotOccupied(spot.getType());
+    }
+
+    // For spots known to be occupied before any ParkingSpot object exists, e.g. when loading a snapshot
+    void spotOccupied(ParkingSpotType type) {
+        occupiedByType[type.ordinal()]++;
+        occupied++;
+    }
+
+    @Override
+    public void spotVacated(ParkingSpot spot) {
+        occupiedByType[spot.getType().ordinal()]--;
+        occupied--;
+    }
+
+    public int getTotalSpots() {
+        return total;
+    }
+
+    public int getTotalSpots(ParkingSpotType type) {
+        return totalByType[type.ordinal()];
+    }
+
+    public int getOccupiedSpots() {
+        return occupied;
+    }
+
+    public int getOccupiedSpots(ParkingSpotType type) {
+        return occupiedByType[type.ordinal()];
+    }
+
+    public int getFreeSpots() {
+        return total - occupied;
+    }
+
+    public int getFreeSpots(ParkingSpotType type) {
+        return totalByType[type.ordinal()] - occupiedByType[type.ordinal()];
+    }
+
+    public boolean isFull() {
+        return occupied == total;
+    }
+
+    public boolean isFull(ParkingSpotType type) {
+        return getFreeSpots(type) == 0;
+    }
+}
@@ -2,26 +2,187 @@ package service;
 
 import domain.Car;
 import domain.ParkingSpot;
+import domain.Reservation;
+import domain.SpotLocation;
+import domain.SpotOccupancyListener;
 import domain.Truck;
+import domain.Vehicle;
+import domain.VehicleKind;
 import exceptions.ParkingFullException;
+import exceptions.ReservationConflictException;
 import exceptions.UnauthorizedAccessException;
 import util.ParkingSpotType;
+import util.SegmentedArray;
+import util.SpotSnapshot;
+import util.TwoLevelBitSet;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+// Allocation, release, capacity and snapshot methods are synchronized so gates on several threads can share one service.
+// Parking directly on a ParkingSpot bypasses that lock and is only safe from a single thread.
+// Spots can be added and removed while the service runs; spot numbers stay put, spot i always lives at index i - 1.
+// Vehicles arriving without a reservation are never given a spot whose reservation is under way or starts within
+// WALK_IN_HOLD, so a walk-in does not stand in the way of a reserved vehicle. Such spots are picked from a bitset of
+// the spots both free and not held, which the reservation calendar keeps current as holds begin and end.
 public class ParkingService {
-    private final ParkingSpot[] parkingSpots;
+    private static final int PARALLEL_RESIDUAL = 1 << 16; // Spots left to test before a query's where() runs in parallel
+    private static final Duration ADMIT_EARLY = Duration.ofMinutes(15); // How early a reservation's vehicle may arrive
+    private static final Duration WALK_IN_HOLD = Duration.ofHours(2); // How far ahead a reserved spot is kept from walk-ins
+
+    private final SegmentedArray<ParkingSpot> parkingSpots; // Null until first use when started from a snapshot, or once removed
+    private final SegmentedArray<SpotLocation> locations; // Where each spot is, null to ask the service's layout
+    private final SpotLayout layout; // Types and locations of spots added without a layout of their own
+    private final SpotSnapshot snapshot; // Source of spots not yet materialized, null if built from scratch
+    private final OccupancyCounters counters = new OccupancyCounters(); // Kept current by the spots themselves
+    private final TwoLevelBitSet[] freeByType; // Per ParkingSpotType, bit i set when parkingSpots[i] is free
+    private final TwoLevelBitSet[] walkInByType; // Per ParkingSpotType, bit i set when parkingSpots[i] is free and not held
+    private final TwoLevelBitSet[] takenByType; // Per ParkingSpotType, bit i set when parkingSpots[i] is occupied
+    private final TwoLevelBitSet[] spotsByType; // Per ParkingSpotType, bit i set when parkingSpots[i] is of the type
+    private final TwoLevelBitSet[] parkedByKind; // Per VehicleKind, bit i set when parkingSpots[i] holds a vehicle of the kind
+    private final int[] parkedCountByKind = new int[VehicleKind.values().length];
+    private final AdjacentRunIndex[] runsByType; // Per ParkingSpotType, laid out on first multi-spot request
+    private final Map<Vehicle, ParkingSpot[]> multiSpotVehicles = new HashMap<>(); // Vehicles spanning several spots
+    private final Map<String, NearestFreeIndex> entrances = new HashMap<>(); // Free spots ranked by distance, by entrance name
+    private final ReservationCalendar reservations;
+    private final SpotOccupancyListener tracker = new SpotTracker();
 
     public ParkingService(int capacity) {
-        parkingSpots = new ParkingSpot[capacity]; // Initialize the array with a fixed capacity
-        for (int i = 0; i < capacity; i++) {
-            // Assigning ParkingSpotType dynamically
-            ParkingSpotType type = (i % 3 == 0) ? ParkingSpotType.HANDICAPPED :
-                    (i % 2 == 0) ? ParkingSpotType.LARGE :
-                            ParkingSpotType.COMPACT;
-            parkingSpots[i] = new ParkingSpot(i + 1, type); // Add ParkingSpot to the array
+        this(capacity, SpotLayout.DEFAULT);
+    }
+
+    public ParkingService(int capacity, SpotLayout layout) {
+        this(0, null, layout);
+        appendSpots(capacity, layout);
+    }
+
+    // Starts from a snapshot written by writeSnapshot. Only the type, occupancy and vehicle kind bytes are read
+    // up front, to fill the counters and bitsets; spot objects are created from the mapped file on first use.
+    // The snapshot must stay open for the life of the service.
+    public ParkingService(SpotSnapshot snapshot) {
+        this(snapshot, SpotLayout.DEFAULT);
+    }
+
+    public ParkingService(SpotSnapshot snapshot, SpotLayout layout) {
+        this(snapshot.size(), snapshot, layout);
+        for (int i = 0; i < snapshot.size(); i++) {
+            ParkingSpotType type = snapshot.spotType(i);
+            if (type == null) {
+                continue; // A removed spot, kept so the numbers after it stay put
+            }
+            counters.spotAdded(type);
+            spotsByType[type.ordinal()].set(i);
+            reservations.spotAdded(type, i);
+            if (snapshot.isOccupied(i)) {
+                counters.spotOccupied(type);
+                takenByType[type.ordinal()].set(i);
+                VehicleKind kind = switch (snapshot.vehicleKind(i)) {
+                    case SpotSnapshot.CAR -> VehicleKind.CAR;
+                    case SpotSnapshot.TRUCK -> VehicleKind.TRUCK;
+                    default -> null;
+                };
+                if (kind != null) {
+                    parkedByKind[kind.ordinal()].set(i);
+                    parkedCountByKind[kind.ordinal()]++;
+                }
+            } else {
+                freeByType[type.ordinal()].set(i);
+                walkInByType[type.ordinal()].set(i); // No reservations yet
+            }
+        }
+    }
+
+    private ParkingService(int capacity, SpotSnapshot snapshot, SpotLayout layout) {
+        parkingSpots = new SegmentedArray<>(capacity);
+        locations = new SegmentedArray<>(capacity);
+        reservations = new ReservationCalendar(capacity, WALK_IN_HOLD);
+        this.layout = layout;
+        this.snapshot = snapshot;
+        freeByType = new TwoLevelBitSet[ParkingSpotType.values().length];
+        walkInByType = new TwoLevelBitSet[ParkingSpotType.values().length];
+        takenByType = new TwoLevelBitSet[ParkingSpotType.values().length];
+        spotsByType = new TwoLevelBitSet[ParkingSpotType.values().length];
+        runsByType = new AdjacentRunIndex[ParkingSpotType.values().length];
+        for (ParkingSpotType type : ParkingSpotType.values()) {
+            freeByType[type.ordinal()] = new TwoLevelBitSet(capacity);
+            walkInByType[type.ordinal()] = new TwoLevelBitSet(capacity);
+            takenByType[type.ordinal()] = new TwoLevelBitSet(capacity);
+            spotsByType[type.ordinal()] = new TwoLevelBitSet(capacity);
+        }
+        parkedByKind = new TwoLevelBitSet[VehicleKind.values().length];
+        for (VehicleKind kind : VehicleKind.values()) {
+            parkedByKind[kind.ordinal()] = new TwoLevelBitSet(capacity);
+        }
+    }
+
+    // Writes every spot, with its vehicle and parked-at time, to a binary snapshot file
+    public synchronized void writeSnapshot(Path file) throws IOException {
+        try (SpotSnapshot.Writer writer = SpotSnapshot.create(file)) {
+            for (int i = 0; i < parkingSpots.length(); i++) {
+                ParkingSpot spot = parkingSpots.get(i);
+                if (spot == null) {
+                    if (typeAt(i) == null) {
+                        writer.vacant(Integer.toString(i + 1), null); // Removed, typeless so later spots keep their numbers
+                    } else {
+                        copySnapshotRecord(writer, i); // Never touched, still exactly as in the source snapshot
+                    }
+                    continue;
+                }
+                String id = Integer.toString(spot.getSpotNumber());
+                Vehicle vehicle = spot.getCurrentVehicle();
+                if (vehicle == null) {
+                    writer.vacant(id, spot.getType());
+                } else if (vehicle instanceof Car car) {
+                    writer.write(id, spot.getType(), SpotSnapshot.CAR, car.getLicensePlate(), car.getColor(), null, 0, spot.getParkedAt());
+                } else if (vehicle instanceof Truck truck) {
+                    writer.write(id, spot.getType(), SpotSnapshot.TRUCK, null, null, null, truck.getCapacity(), spot.getParkedAt());
+                } else {
+                    throw new IllegalArgumentException("Cannot snapshot vehicle " + vehicle.getType());
+                }
+            }
+        }
+    }
+
+    private void copySnapshotRecord(SpotSnapshot.Writer writer, int index) throws IOException {
+        writer.write(snapshot.spotId(index), snapshot.spotType(index), snapshot.vehicleKind(index), snapshot.registration(index),
+                snapshot.make(index), snapshot.model(index), snapshot.number(index), snapshot.parkedAt(index));
+    }
+
+    // Returns the spot at an array index, creating it from the snapshot the first time it is needed,
+    // or null if there is no spot there
+    private ParkingSpot spotAt(int index) {
+        ParkingSpot spot = parkingSpots.get(index);
+        if (spot == null && snapshot != null && index < snapshot.size()) {
+            synchronized (this) { // Streams call this without the service lock
+                return materialize(index);
+            }
         }
+        return spot;
+    }
+
+    private ParkingSpot materialize(int index) {
+        ParkingSpot spot = parkingSpots.get(index);
+        if (spot == null && typeAt(index) != null) { // Not removed since the snapshot was taken
+            Vehicle vehicle = switch (snapshot.vehicleKind(index)) {
+                case SpotSnapshot.CAR -> new Car(snapshot.registration(index), snapshot.make(index));
+                case SpotSnapshot.TRUCK -> new Truck(snapshot.number(index));
+                default -> null;
+            };
+            spot = new ParkingSpot(index + 1, snapshot.spotType(index), vehicle, snapshot.parkedAt(index), tracker);
+            parkingSpots.set(index, spot);
+        }
+        return spot;
     }
 
     // Polymorphism examples
@@ -38,20 +199,518 @@ public class ParkingService {
     }
 
     // Method to park a car, throws a checked exception if no spots are available
-    public void parkCar() throws ParkingFullException {
-        boolean hasEmptySpot = Stream.of(parkingSpots).anyMatch(spot -> !spot.isOccupied());
-        if (!hasEmptySpot) {
+    public synchronized void parkCar() throws ParkingFullException {
+        if (counters.isFull()) { // Constant time, no scan over the spots
             throw new ParkingFullException("No parking spots available!");
         }
         System.out.println("Car parked successfully.");
     }
 
-    // Method using Predicate to filter parking spots
+    // Parks the vehicle in the lowest-numbered free spot of the given type not held for a reservation, found through the
+    // walk-in bitset
+    public synchronized ParkingSpot allocate(ParkingSpotType type, Vehicle vehicle) throws ParkingFullException {
+        reservations.advance(LocalDateTime.now(), this::refreshWalkIn);
+        int index = walkInByType[type.ordinal()].nextSetBit(0);
+        if (index < 0) {
+            throw new ParkingFullException("No " + type + " parking spots available!");
+        }
+        ParkingSpot spot = spotAt(index);
+        spot.parkVehicle(vehicle); // The tracker marks the spot as taken
+        return spot;
+    }
+
+    // Parks the vehicle across the first run of length free spots of the given type standing side by side, none of them
+    // held for a reservation: on one level and row, at consecutive positions. Spot numbers play no part, so a layout
+    // that never puts two spots of the type next to each other, as SpotLayout.DEFAULT does for LARGE spots, has no runs
+    // longer than one.
+    public synchronized ParkingSpot[] allocateRun(ParkingSpotType type, Vehicle vehicle, int length) throws ParkingFullException {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Run length must be positive: " + length);
+        }
+        if (multiSpotVehicles.containsKey(vehicle)) {
+            throw new IllegalStateException(vehicle.getType() + " is already parked across several spots");
+        }
+        AdjacentRunIndex runs = runIndex(type);
+        if (length > runs.longest()) {
+            throw new ParkingFullException("No " + length + " " + type + " parking spots stand side by side!");
+        }
+        reservations.advance(LocalDateTime.now(), this::refreshWalkIn);
+        int[] indexes = runs.firstFreeRun(length);
+        if (indexes == null) {
+            throw new ParkingFullException("No run of " + length + " adjacent " + type + " parking spots available!");
+        }
+        ParkingSpot[] run = new ParkingSpot[length];
+        for (int i = 0; i < length; i++) {
+            run[i] = spotAt(indexes[i]);
+            run[i].parkVehicle(vehicle); // The tracker marks each spot as taken
+        }
+        multiSpotVehicles.put(vehicle, run);
+        return run;
+    }
+
+    // Frees every spot of the run the vehicle was given by allocateRun
+    public synchronized boolean releaseRun(Vehicle vehicle) {
+        ParkingSpot[] run = multiSpotVehicles.remove(vehicle);
+        if (run == null) {
+            return false;
+        }
+        for (ParkingSpot spot : run) {
+            if (spot.getCurrentVehicle() == vehicle) { // Skip spots already vacated one by one
+                spot.vacateSpot();
+            }
+        }
+        return true;
+    }
+
+    // Frees a spot handed out by allocate (or parked directly), making it available again
+    public synchronized void release(int spotNumber) {
+        ParkingSpot spot = spotNumber >= 1 ? spotAt(spotNumber - 1) : null;
+        if (spot == null) {
+            throw new IllegalArgumentException("No parking spot " + spotNumber);
+        }
+        spot.vacateSpot(); // The tracker marks the spot as free
+    }
+
+    // Adds count spots numbered after the highest existing one, typed and placed by the service's layout, e.g. to open
+    // an overflow level. Returns the number of the first new spot.
+    public synchronized int addSpots(int count) {
+        return appendSpots(count, layout);
+    }
+
+    // As addSpots(count), with the types and locations of the new spots taken from the given layout
+    public synchronized int addSpots(int count, SpotLayout layout) {
+        return appendSpots(count, layout);
+    }
+
+    // Removes the spots numbered fromNumber to toNumber inclusive, e.g. when an overflow level closes, and returns
+    // how many there were. Every spot in the range must be free and unreserved. The other spots keep their numbers; the removed
+    // numbers are only handed out again if they were the highest, in which case later additions reuse them.
+    // ParkingSpot objects of removed spots must no longer be parked in.
+    public synchronized int removeSpots(int fromNumber, int toNumber) {
+        if (fromNumber < 1 || fromNumber > toNumber || toNumber > parkingSpots.length()) {
+            throw new IllegalArgumentException("No parking spots " + fromNumber + " to " + toNumber);
+        }
+        int from = fromNumber - 1;
+        for (ParkingSpotType type : ParkingSpotType.values()) {
+            int taken = nextSetBit(takenByType[type.ordinal()], from, toNumber);
+            if (taken >= 0) {
+                throw new IllegalStateException("Spot " + (taken + 1) + " is occupied");
+            }
+        }
+        int booked = reservations.firstReserved(from, toNumber);
+        if (booked >= 0) {
+            throw new IllegalStateException("Spot " + (booked + 1) + " has reservations");
+        }
+        int removed = 0;
+        for (ParkingSpotType type : ParkingSpotType.values()) {
+            TwoLevelBitSet spots = spotsByType[type.ordinal()];
+            AdjacentRunIndex runs = runsByType[type.ordinal()];
+            for (int i = nextSetBit(spots, from, toNumber); i >= 0; i = nextSetBit(spots, i + 1, toNumber)) {
+                spots.clear(i);
+                freeByType[type.ordinal()].clear(i);
+                walkInByType[type.ordinal()].clear(i);
+                if (runs != null) {
+                    runs.setFree(i, false); // Its slot stays blank, so no run spans the hole
+                }
+                parkingSpots.set(i, null);
+                locations.set(i, null);
+                reservations.spotRemoved(type, i);
+                counters.spotRemoved(type);
+                removed++;
+            }
+        }
+        int length = parkingSpots.length();
+        while (length > 0 && typeAt(length - 1) == null) {
+            length--; // Give back the removed spots at the end, and the segments they were in
+        }
+        parkingSpots.resize(length);
+        locations.resize(length);
+        rankEntrances(); // Here rather than in the next search, which drivers are waiting on
+        return removed;
+    }
+
+    // Registers an entrance, so drivers arriving there can be sent to the nearest free spot; replaces any entrance
+    // of the same name
+    public synchronized void addEntrance(String name, SpotLocation location) {
+        entrances.put(name, new NearestFreeIndex(location));
+    }
+
+    // The free spot of the type nearest the entrance by walking distance and not held for a reservation, or null if
+    // there is none. Ties go to the lower spot number. The first search from an entrance ranks the spots by distance;
+    // after that every search is a bitset lookup, and adding or removing spots ranks them again up front.
+    public synchronized ParkingSpot findNearestFree(String entrance, ParkingSpotType type) {
+        NearestFreeIndex index = entrances.get(entrance);
+        if (index == null) {
+            throw new IllegalArgumentException("No entrance " + entrance);
+        }
+        reservations.advance(LocalDateTime.now(), this::refreshWalkIn);
+        if (!index.isBuilt()) {
+            index.build(parkingSpots.length(), spotsByType, walkInByType, this::locationAt);
+        }
+        int nearest = index.nearestFree(type);
+        return nearest < 0 ? null : spotAt(nearest);
+    }
+
+    // Parks the vehicle in the free spot of the type nearest the entrance
+    public synchronized ParkingSpot allocateNearest(String entrance, ParkingSpotType type, Vehicle vehicle) throws ParkingFullException {
+        ParkingSpot spot = findNearestFree(entrance, type);
+        if (spot == null) {
+            throw new ParkingFullException("No " + type + " parking spots available!");
+        }
+        spot.parkVehicle(vehicle); // The tracker marks the spot as taken, for every entrance
+        return spot;
+    }
+
+    // Where a spot is, or null if there is no such spot
+    public SpotLocation getLocation(int spotNumber) {
+        return spotNumber >= 1 && typeAt(spotNumber - 1) != null ? locationAt(spotNumber - 1) : null;
+    }
+
+    // Holds a spot for the window from (inclusive) to to (exclusive), if no other reservation of the spot overlaps it.
+    // Reservations are kept apart from occupancy: a vehicle parked without one may still be in the spot when the
+    // reservation starts, and is not moved.
+    public synchronized Reservation reserve(int spotNumber, LocalDateTime from, LocalDateTime to) throws ReservationConflictException {
+        checkWindow(from, to);
+        ParkingSpotType type = spotNumber >= 1 ? typeAt(spotNumber - 1) : null;
+        if (type == null) {
+            throw new IllegalArgumentException("No parking spot " + spotNumber);
+        }
+        if (!reservations.isFree(spotNumber - 1, from, to)) {
+            throw new ReservationConflictException("Spot " + spotNumber + " is already reserved between " + from + " and " + to);
+        }
+        return reservations.reserve(type, spotNumber - 1, from, to);
+    }
+
+    // Holds any spot of the type for the window, found by findReservable
+    public synchronized Reservation reserve(ParkingSpotType type, LocalDateTime from, LocalDateTime to) throws ReservationConflictException {
+        checkWindow(from, to);
+        int index = reservations.findFree(type, from, to);
+        if (index < 0) {
+            throw new ReservationConflictException("No " + type + " parking spots free between " + from + " and " + to);
+        }
+        return reservations.reserve(type, index, from, to);
+    }
+
+    // A spot of the type with no reservation overlapping the window, or null if there is none. Logarithmic in the
+    // number of reservations: one interval-tree search over the gaps between them, or one bitset lookup for a spot
+    // with no reservations at all
+    public synchronized ParkingSpot findReservable(ParkingSpotType type, LocalDateTime from, LocalDateTime to) {
+        checkWindow(from, to);
+        int index = reservations.findFree(type, from, to);
+        return index < 0 ? null : spotAt(index);
+    }
+
+    // True if no reservation of the spot overlaps the window
+    public synchronized boolean isReservable(int spotNumber, LocalDateTime from, LocalDateTime to) {
+        checkWindow(from, to);
+        if (spotNumber < 1 || typeAt(spotNumber - 1) == null) {
+            throw new IllegalArgumentException("No parking spot " + spotNumber);
+        }
+        return reservations.isFree(spotNumber - 1, from, to);
+    }
+
+    // Frees the window of a reservation for others; false if it was already cancelled or expired
+    public synchronized boolean cancel(long reservationId) {
+        Reservation reservation = reservations.get(reservationId);
+        if (reservation == null) {
+            return false;
+        }
+        reservations.cancel(typeAt(reservation.spotNumber() - 1), reservationId);
+        refreshWalkIn(reservation.spotNumber() - 1); // The spot may no longer be held
+        return true;
+    }
+
+    // Drops the reservations that ended at or before now, returning how many there were
+    public synchronized int expireReservations(LocalDateTime now) {
+        int expired = 0;
+        for (Reservation reservation = reservations.nextExpired(now); reservation != null;
+             reservation = reservations.nextExpired(now)) {
+            reservations.cancel(typeAt(reservation.spotNumber() - 1), reservation.id());
+            refreshWalkIn(reservation.spotNumber() - 1);
+            expired++;
+        }
+        return expired;
+    }
+
+    // Parks a vehicle arriving at now in the spot its reservation holds, straight from the reservation without a search.
+    // The vehicle may arrive up to ADMIT_EARLY before the window, and a reservation admits one vehicle once; it then
+    // stays on the spot's calendar until it is cancelled or expires. Should the held spot still be occupied, say by a
+    // vehicle that overstayed its own reservation, the reservation moves to the lowest-numbered free spot of the type
+    // with no reservation for the rest of the window, and the vehicle is parked there instead.
+    // ReservationConflictException if the vehicle arrives outside the window, the reservation was already admitted,
+    // or there is no spot to move it to.
+    public synchronized ParkingSpot admit(long reservationId, Vehicle vehicle, LocalDateTime now) throws ReservationConflictException {
+        Reservation reservation = reservations.get(reservationId);
+        if (reservation == null) {
+            throw new IllegalArgumentException("No reservation " + reservationId);
+        }
+        if (now.isBefore(reservation.from().minus(ADMIT_EARLY)) || !now.isBefore(reservation.to())) {
+            throw new ReservationConflictException("Reservation " + reservationId + " is for " + reservation.from() + " to "
+                    + reservation.to() + ", not " + now);
+        }
+        if (reservations.isAdmitted(reservationId)) {
+            throw new ReservationConflictException("Reservation " + reservationId + " has already been admitted");
+        }
+        reservations.advance(LocalDateTime.now(), this::refreshWalkIn); // Holds follow the clock, like walk-ins
+        int index = reservation.spotNumber() - 1;
+        ParkingSpot spot = spotAt(index);
+        if (spot.isOccupied() || now.isBefore(reservation.from()) && !reservations.isFree(index, now, reservation.from())) {
+            ParkingSpotType type = spot.getType();
+            int moved = nextFreeUntil(walkInByType[type.ordinal()], now, reservation.to());
+            if (moved < 0) { // The reservation keeps its spot, and the vehicle may try again
+                throw new ReservationConflictException("Spot " + reservation.spotNumber() + " is not free yet and no other "
+                        + type + " parking spot is free until " + reservation.to());
+            }
+            reservations.cancel(type, reservationId);
+            refreshWalkIn(index);
+            reservationId = reservations.reserve(type, moved, now, reservation.to()).id();
+            reservations.advance(LocalDateTime.now(), this::refreshWalkIn); // The new reservation may hold its spot at once
+            spot = spotAt(moved);
+        }
+        reservations.admit(reservationId);
+        spot.parkVehicle(vehicle); // The tracker marks the spot as taken
+        return spot;
+    }
+
+    // Occupancy summary, answered from the counters in constant time
+    public OccupancyCounters getOccupancy() {
+        return counters;
+    }
+
+    // Method using Predicate to filter parking spots; an opaque predicate means testing every spot, see query
     public Stream<ParkingSpot> filterParkingSpots(Predicate<ParkingSpot> condition) {
-        return Stream.of(parkingSpots) // Convert the array to a Stream
+        return IntStream.range(0, parkingSpots.length()).mapToObj(this::spotAt) // Stream the spots in array order
+                .filter(Objects::nonNull) // Skip removed spots
                 .filter(condition); // Use Predicate to filter based on the condition
     }
 
+    // Streams the spots matching a structured query in spot-number order, like filterParkingSpots(query) but
+    // planned against the indexes. The type, occupancy and vehicle conditions are answered when this is called,
+    // by walking the smallest bitset whose spots cover every match, so the cost follows the size of that bitset
+    // rather than the whole park. Only a query with none of those conditions streams its spot-number range.
+    // A where() condition is then tested on the remaining spots, in parallel when there are many of them.
+    public Stream<ParkingSpot> query(SpotQuery query) {
+        int from = Math.max(query.fromNumber, 1) - 1; // Array indexes, from inclusive and to exclusive
+        int to = Math.min(query.toNumber, parkingSpots.length());
+        IntStream indexes;
+        long remaining;
+        if (from >= to) {
+            indexes = IntStream.empty();
+            remaining = 0;
+        } else if (!query.isIndexed()) {
+            indexes = IntStream.range(from, to);
+            remaining = to - from;
+        } else {
+            int[] matches = matchingIndexes(query, from, to);
+            indexes = Arrays.stream(matches);
+            remaining = matches.length;
+        }
+        Stream<ParkingSpot> spots = indexes.mapToObj(this::spotAt).filter(Objects::nonNull); // Removed spots, or removed since planning
+        if (query.residual == null) {
+            return spots;
+        }
+        return (remaining >= PARALLEL_RESIDUAL ? spots.parallel() : spots).filter(query.residual);
+    }
+
+    // Indexes in [from, to) passing the query's indexed conditions, in order
+    private synchronized int[] matchingIndexes(SpotQuery query, int from, int to) {
+        Set<ParkingSpotType> types = query.types != null ? query.types : EnumSet.allOf(ParkingSpotType.class);
+        TwoLevelBitSet[] driver = null; // Null to walk the range itself
+        long driverSize = to - from;
+        if (query.vehicleKinds != null) {
+            long size = 0;
+            for (VehicleKind kind : query.vehicleKinds) {
+                size += parkedCountByKind[kind.ordinal()];
+            }
+            if (size < driverSize) {
+                driver = select(parkedByKind, query.vehicleKinds);
+                driverSize = size;
+            }
+        }
+        if (query.occupied != null) {
+            long size = 0;
+            for (ParkingSpotType type : types) {
+                size += query.occupied ? counters.getOccupiedSpots(type) : counters.getFreeSpots(type);
+            }
+            if (size < driverSize) {
+                driver = select(query.occupied ? takenByType : freeByType, types);
+                driverSize = size;
+            }
+        }
+        if (query.types != null) {
+            long size = 0;
+            for (ParkingSpotType type : types) {
+                size += counters.getTotalSpots(type);
+            }
+            if (size < driverSize) {
+                driver = select(spotsByType, types);
+                driverSize = size;
+            }
+        }
+
+        int[] matches = new int[(int) driverSize];
+        int count = 0;
+        if (driver == null) {
+            for (int i = from; i < to; i++) {
+                if (passesIndexes(query, i)) {
+                    matches[count++] = i;
+                }
+            }
+            return Arrays.copyOf(matches, count);
+        }
+        // The driver's bitsets are disjoint, a spot has one type and one vehicle, so merging them visits each spot once
+        int[] next = new int[driver.length];
+        for (int d = 0; d < driver.length; d++) {
+            next[d] = nextSetBit(driver[d], from, to);
+        }
+        while (true) {
+            int d = -1;
+            for (int k = 0; k < next.length; k++) {
+                if (next[k] >= 0 && (d < 0 || next[k] < next[d])) {
+                    d = k;
+                }
+            }
+            if (d < 0) {
+                return Arrays.copyOf(matches, count);
+            }
+            int i = next[d];
+            if (passesIndexes(query, i)) {
+                matches[count++] = i;
+            }
+            next[d] = nextSetBit(driver[d], i + 1, to);
+        }
+    }
+
+    // Checks the type, occupancy and vehicle conditions of a query against the bitsets, without the spot object
+    private boolean passesIndexes(SpotQuery query, int index) {
+        ParkingSpotType type = typeAt(index);
+        if (type == null || query.types != null && !query.types.contains(type)) {
+            return false;
+        }
+        boolean taken = takenByType[type.ordinal()].get(index);
+        if (query.occupied != null && query.occupied != taken) {
+            return false;
+        }
+        if (query.vehicleKinds == null) {
+            return true;
+        }
+        for (VehicleKind kind : query.vehicleKinds) {
+            if (parkedByKind[kind.ordinal()].get(index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Index of the first spot set in walkIn with no reservation overlapping [from, to), or -1 if there is none. Spots
+    // not held have no reservation for WALK_IN_HOLD, so this only walks past those reserved later in a longer window
+    private int nextFreeUntil(TwoLevelBitSet walkIn, LocalDateTime from, LocalDateTime to) {
+        for (int i = walkIn.nextSetBit(0); i >= 0; i = walkIn.nextSetBit(i + 1)) {
+            if (reservations.isFree(i, from, to)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Sets a spot's walk-in bit from its occupancy and hold, passing a change on to the run and entrance indexes
+    private void refreshWalkIn(int index) {
+        ParkingSpotType type = typeAt(index);
+        if (type == null) {
+            return; // Removed
+        }
+        boolean walkIn = freeByType[type.ordinal()].get(index) && !reservations.isHeld(index);
+        TwoLevelBitSet bits = walkInByType[type.ordinal()];
+        if (bits.get(index) == walkIn) {
+            return;
+        }
+        if (walkIn) {
+            bits.set(index);
+        } else {
+            bits.clear(index);
+        }
+        for (NearestFreeIndex entrance : entrances.values()) {
+            entrance.setFree(type, index, walkIn);
+        }
+        AdjacentRunIndex runs = runsByType[type.ordinal()];
+        if (runs != null) {
+            runs.setFree(index, walkIn);
+        }
+    }
+
+    // Type of the spot at an index, from the type bitsets, or null if there is no spot there
+    private ParkingSpotType typeAt(int index) {
+        for (ParkingSpotType type : ParkingSpotType.values()) {
+            if (spotsByType[type.ordinal()].get(index)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static void checkWindow(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Reservation window must end after it starts: " + from + " to " + to);
+        }
+    }
+
+    // Ranks the spots again for every entrance searched from so far, after spots are added or removed
+    private void rankEntrances() {
+        for (NearestFreeIndex index : entrances.values()) {
+            if (index.isBuilt()) {
+                index.build(parkingSpots.length(), spotsByType, walkInByType, this::locationAt);
+            }
+        }
+    }
+
+    private SpotLocation locationAt(int index) {
+        SpotLocation location = locations.get(index);
+        return location != null ? location : layout.locationOf(index + 1); // Loaded from a snapshot, which has no locations
+    }
+
+    // Adds count spots after the highest-numbered one and returns the number of the first
+    private int appendSpots(int count, SpotLayout layout) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative spot count: " + count);
+        }
+        int first = parkingSpots.length();
+        int length = Math.addExact(first, count);
+        for (TwoLevelBitSet[] bitsets : new TwoLevelBitSet[][]{freeByType, walkInByType, takenByType, spotsByType, parkedByKind}) {
+            for (TwoLevelBitSet bits : bitsets) {
+                bits.ensureCapacity(length);
+            }
+        }
+        parkingSpots.resize(length); // New segments only, existing spots stay where they are
+        locations.resize(length);
+        for (int i = first; i < length; i++) {
+            ParkingSpotType type = layout.typeOf(i + 1);
+            parkingSpots.set(i, new ParkingSpot(i + 1, type, tracker));
+            locations.set(i, layout.locationOf(i + 1));
+            reservations.spotAdded(type, i);
+            counters.spotAdded(type);
+            spotsByType[type.ordinal()].set(i);
+            freeByType[type.ordinal()].set(i);
+            walkInByType[type.ordinal()].set(i);
+        }
+        Arrays.fill(runsByType, null); // New spots may stand between old ones, laid out again on the next multi-spot request
+        rankEntrances();
+        return first + 1;
+    }
+
+    private static TwoLevelBitSet[] select(TwoLevelBitSet[] byOrdinal, Set<? extends Enum<?>> keys) {
+        TwoLevelBitSet[] selected = new TwoLevelBitSet[keys.size()];
+        int i = 0;
+        for (Enum<?> key : keys) {
+            selected[i++] = byOrdinal[key.ordinal()];
+        }
+        return selected;
+    }
+
+    private static int nextSetBit(TwoLevelBitSet bits, int fromIndex, int toIndex) {
+        int index = bits.nextSetBit(fromIndex);
+        return index < toIndex ? index : -1;
+    }
+
     // New Method: Authorize users
     public void authorizeUser(String userRole) {
         if (!"ADMIN".equals(userRole)) {
@@ -59,4 +718,45 @@ public class ParkingService {
         }
         System.out.println("Access granted for role: " + userRole);
     }
+
+    // Lays out the spots of a type by location the first time a run of them is needed
+    private AdjacentRunIndex runIndex(ParkingSpotType type) {
+        AdjacentRunIndex runs = runsByType[type.ordinal()];
+        if (runs == null) {
+            runs = new AdjacentRunIndex(parkingSpots.length(), spotsByType[type.ordinal()], walkInByType[type.ordinal()],
+                    this::locationAt);
+            runsByType[type.ordinal()] = runs;
+        }
+        return runs;
+    }
+
+    // Keeps the counters, bitsets and run indexes in step with every spot, however the spot was parked or vacated
+    private class SpotTracker implements SpotOccupancyListener {
+        @Override
+        public void spotOccupied(ParkingSpot spot) {
+            counters.spotOccupied(spot);
+            freeByType[spot.getType().ordinal()].clear(spot.getSpotNumber() - 1);
+            takenByType[spot.getType().ordinal()].set(spot.getSpotNumber() - 1);
+            refreshWalkIn(spot.getSpotNumber() - 1); // Also takes it out of the entrance and run indexes
+            VehicleKind kind = VehicleKind.of(spot.getCurrentVehicle());
+            if (kind != null) {
+                parkedByKind[kind.ordinal()].set(spot.getSpotNumber() - 1);
+                parkedCountByKind[kind.ordinal()]++;
+            }
+        }
+
+        @Override
+        public void spotVacated(ParkingSpot spot) {
+            counters.spotVacated(spot);
+            freeByType[spot.getType().ordinal()].set(spot.getSpotNumber() - 1);
+            takenByType[spot.getType().ordinal()].clear(spot.getSpotNumber() - 1);
+            refreshWalkIn(spot.getSpotNumber() - 1); // Back in the entrance and run indexes unless held
+            for (VehicleKind kind : VehicleKind.values()) { // The vehicle is already gone, clear whichever kind it was
+                if (parkedByKind[kind.ordinal()].get(spot.getSpotNumber() - 1)) {
+                    parkedByKind[kind.ordinal()].clear(spot.getSpotNumber() - 1);
+                    parkedCountByKind[kind.ordinal()]--;
+                }
+            }
+        }
+    }
 }
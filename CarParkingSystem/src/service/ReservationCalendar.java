@@ -0,0 +1,238 @@
+package service;
+
+import domain.Reservation;
+import util.IntIntOpenHashMap;
+import util.IntervalTree;
+import util.ParkingSpotType;
+import util.TwoLevelBitSet;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+// Reservations of a ParkingService's spots, by array index. Each reserved spot has a calendar of its reservations
+// by start time, so a conflict check is a floor and a ceiling lookup. The free gaps between reservations go into an
+// interval tree per spot type, and spots with no reservations at all into a bitset per type, so finding a spot of a
+// type free for a whole window is one tree search or one bitset lookup. Gaps are preferred, packing reservations
+// onto spots already in use and keeping unreserved spots whole for long stays. Times are epoch milliseconds in UTC,
+// as in SpotSnapshot; the open ends of a spot's first and last gap are Long.MIN_VALUE and Long.MAX_VALUE.
+// A spot is also held, kept from vehicles arriving without a reservation, while one of its reservations is under way
+// or starts within the hold time. Holds begin and end as time passes, so they are brought up to date by advance(),
+// which takes them from two queues by time rather than looking at every reservation.
+final class ReservationCalendar {
+    private final IntervalTree[] gapsByType; // Per ParkingSpotType, free gaps of the spots with reservations
+    private final TwoLevelBitSet[] unreservedByType; // Per ParkingSpotType, bit i set when spot i has no reservations
+    private final TwoLevelBitSet reserved; // Bit i set when spot i has a calendar
+    private final Map<Integer, TreeMap<Long, Reservation>> calendars = new HashMap<>(); // By spot index, by start
+    private final Map<Long, Reservation> byId = new HashMap<>();
+    private final Set<Long> admitted = new HashSet<>(); // Reservations whose vehicle has been parked in the spot
+    private final PriorityQueue<Reservation> byEnd = new PriorityQueue<>(Comparator.comparing(Reservation::to));
+    private final long holdMillis; // How long before a reservation starts its spot is held
+    private final TwoLevelBitSet held; // Bit i set when spot i is held
+    private final IntIntOpenHashMap holdsBySpot = new IntIntOpenHashMap(); // Reservations holding each held spot
+    private final Set<Long> holding = new HashSet<>(); // Reservations counted in holdsBySpot
+    private final PriorityQueue<Reservation> byHoldStart = new PriorityQueue<>(Comparator.comparing(Reservation::from));
+    private final PriorityQueue<Reservation> byHoldEnd = new PriorityQueue<>(Comparator.comparing(Reservation::to));
+    private long nextId = 1;
+
+    ReservationCalendar(int capacity, Duration hold) {
+        holdMillis = hold.toMillis();
+        held = new TwoLevelBitSet(capacity);
+        gapsByType = new IntervalTree[ParkingSpotType.values().length];
+        unreservedByType = new TwoLevelBitSet[ParkingSpotType.values().length];
+        for (ParkingSpotType type : ParkingSpotType.values()) {
+            gapsByType[type.ordinal()] = new IntervalTree();
+            unreservedByType[type.ordinal()] = new TwoLevelBitSet(capacity);
+        }
+        reserved = new TwoLevelBitSet(capacity);
+    }
+
+    void spotAdded(ParkingSpotType type, int index) {
+        unreservedByType[type.ordinal()].ensureCapacity(index + 1);
+        reserved.ensureCapacity(index + 1);
+        held.ensureCapacity(index + 1);
+        unreservedByType[type.ordinal()].set(index);
+    }
+
+    // For spots with no reservations, see firstReserved
+    void spotRemoved(ParkingSpotType type, int index) {
+        unreservedByType[type.ordinal()].clear(index);
+    }
+
+    // Index of the first spot in [from, to) with reservations, or -1 if there is none
+    int firstReserved(int from, int to) {
+        int index = reserved.nextSetBit(from);
+        return index < to ? index : -1;
+    }
+
+    Reservation get(long id) {
+        return byId.get(id);
+    }
+
+    // True if the spot has no reservation overlapping [from, to)
+    boolean isFree(int index, LocalDateTime from, LocalDateTime to) {
+        TreeMap<Long, Reservation> calendar = calendars.get(index);
+        long start = millis(from);
+        return calendar == null || gapStart(calendar, start) <= start && gapEnd(calendar, start) >= millis(to);
+    }
+
+    // Index of a spot of the type free for the whole of [from, to), or -1 if there is none
+    int findFree(ParkingSpotType type, LocalDateTime from, LocalDateTime to) {
+        int index = gapsByType[type.ordinal()].findCovering(millis(from), millis(to));
+        return index >= 0 ? index : unreservedByType[type.ordinal()].nextSetBit(0);
+    }
+
+    // Books a spot already checked to be free with isFree or findFree
+    Reservation reserve(ParkingSpotType type, int index, LocalDateTime from, LocalDateTime to) {
+        long start = millis(from);
+        long end = millis(to);
+        TreeMap<Long, Reservation> calendar = calendars.get(index);
+        IntervalTree gaps = gapsByType[type.ordinal()];
+        long gapStart = Long.MIN_VALUE;
+        long gapEnd = Long.MAX_VALUE;
+        if (calendar == null) {
+            calendar = new TreeMap<>();
+            calendars.put(index, calendar);
+            unreservedByType[type.ordinal()].clear(index);
+            reserved.set(index);
+        } else {
+            gapStart = gapStart(calendar, start);
+            gapEnd = gapEnd(calendar, start);
+            gaps.remove(gapStart, index);
+        }
+        addGap(gaps, gapStart, start, index); // The gap is split around the new reservation
+        addGap(gaps, end, gapEnd, index);
+        Reservation reservation = new Reservation(nextId++, index + 1, from, to);
+        calendar.put(start, reservation);
+        byId.put(reservation.id(), reservation);
+        byEnd.add(reservation);
+        byHoldStart.add(reservation); // Held from the next advance() on, if that is late enough
+        return reservation;
+    }
+
+    boolean isAdmitted(long id) {
+        return admitted.contains(id);
+    }
+
+    // Marks a reservation as admitted; it stays on the calendar until cancelled or expired
+    void admit(long id) {
+        admitted.add(id);
+    }
+
+    // Cancels a reservation, merging its window back into the gaps around it; false if it was already gone
+    boolean cancel(ParkingSpotType type, long id) {
+        Reservation reservation = byId.remove(id);
+        if (reservation == null) {
+            return false;
+        }
+        admitted.remove(id);
+        if (holding.remove(id)) {
+            release(reservation.spotNumber() - 1);
+        }
+        int index = reservation.spotNumber() - 1;
+        long start = millis(reservation.from());
+        long end = millis(reservation.to());
+        TreeMap<Long, Reservation> calendar = calendars.get(index);
+        calendar.remove(start);
+        long gapStart = gapStart(calendar, start);
+        long gapEnd = gapEnd(calendar, start);
+        IntervalTree gaps = gapsByType[type.ordinal()];
+        if (gapStart < start) {
+            gaps.remove(gapStart, index);
+        }
+        if (end < gapEnd) {
+            gaps.remove(end, index);
+        }
+        if (calendar.isEmpty()) {
+            calendars.remove(index); // Whole again, back to the unreserved bitset
+            reserved.clear(index);
+            unreservedByType[type.ordinal()].set(index);
+        } else {
+            gaps.add(gapStart, gapEnd, index);
+        }
+        return true; // The entry left in byEnd is skipped when it comes up
+    }
+
+    // Reservation ending first at or before now, or null if there is none; the caller cancels it
+    Reservation nextExpired(LocalDateTime now) {
+        while (!byEnd.isEmpty() && !byEnd.peek().to().isAfter(now)) {
+            Reservation reservation = byEnd.poll();
+            if (byId.get(reservation.id()) == reservation) {
+                return reservation;
+            }
+        }
+        return null;
+    }
+
+    // True if the spot is held as of the last advance(), or since by a reservation not yet cancelled
+    boolean isHeld(int index) {
+        return held.get(index);
+    }
+
+    // Starts and ends the holds due by now, telling changed with the index of each spot held or released
+    void advance(LocalDateTime now, IntConsumer changed) {
+        long time = millis(now);
+        while (!byHoldStart.isEmpty() && millis(byHoldStart.peek().from()) - holdMillis <= time) {
+            Reservation reservation = byHoldStart.poll();
+            if (byId.get(reservation.id()) == reservation && reservation.to().isAfter(now)) {
+                holding.add(reservation.id());
+                byHoldEnd.add(reservation);
+                int index = reservation.spotNumber() - 1;
+                int holds = holdsBySpot.get(index);
+                holdsBySpot.put(index, holds == IntIntOpenHashMap.NO_VALUE ? 1 : holds + 1);
+                if (holds == IntIntOpenHashMap.NO_VALUE) {
+                    held.set(index);
+                    changed.accept(index);
+                }
+            }
+        }
+        while (!byHoldEnd.isEmpty() && !byHoldEnd.peek().to().isAfter(now)) {
+            Reservation reservation = byHoldEnd.poll();
+            if (holding.remove(reservation.id()) && release(reservation.spotNumber() - 1)) {
+                changed.accept(reservation.spotNumber() - 1);
+            }
+        }
+    }
+
+    // Takes one hold off a spot, true if that was its last
+    private boolean release(int index) {
+        int holds = holdsBySpot.get(index);
+        if (holds > 1) {
+            holdsBySpot.put(index, holds - 1);
+            return false;
+        }
+        holdsBySpot.remove(index);
+        held.clear(index);
+        return true;
+    }
+
+    private static void addGap(IntervalTree gaps, long start, long end, int index) {
+        if (start < end) {
+            gaps.add(start, end, index);
+        }
+    }
+
+    // Start of the gap a time falls into or right after: the end of the last reservation starting before it
+    private static long gapStart(TreeMap<Long, Reservation> calendar, long time) {
+        Map.Entry<Long, Reservation> before = calendar.lowerEntry(time);
+        return before == null ? Long.MIN_VALUE : millis(before.getValue().to());
+    }
+
+    // End of that gap: the start of the first reservation starting at or after the time
+    private static long gapEnd(TreeMap<Long, Reservation> calendar, long time) {
+        Long after = calendar.ceilingKey(time);
+        return after == null ? Long.MAX_VALUE : after;
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
@@ -0,0 +1,65 @@
+package service;
+
+import domain.SpotLocation;
+import util.ParkingSpotType;
+
+import java.util.function.IntFunction;
+
+// Decides the type and location of each spot a ParkingService creates, by spot number
+@FunctionalInterface
+public interface SpotLayout {
+    // Every third spot HANDICAPPED, the others alternating LARGE and COMPACT
+    SpotLayout DEFAULT = spotNumber -> (spotNumber - 1) % 3 == 0 ? ParkingSpotType.HANDICAPPED :
+            (spotNumber - 1) % 2 == 0 ? ParkingSpotType.LARGE :
+                    ParkingSpotType.COMPACT;
+
+    ParkingSpotType typeOf(int spotNumber);
+
+    // Unless placed otherwise, spots stand in a single row on level 0, in spot-number order
+    default SpotLocation locationOf(int spotNumber) {
+        return new SpotLocation(0, 0, spotNumber - 1);
+    }
+
+    // This layout's types, with the spots placed by the given function
+    default SpotLayout placedBy(IntFunction<SpotLocation> locations) {
+        SpotLayout types = this;
+        return new SpotLayout() {
+            @Override
+            public ParkingSpotType typeOf(int spotNumber) {
+                return types.typeOf(spotNumber);
+            }
+
+            @Override
+            public SpotLocation locationOf(int spotNumber) {
+                return locations.apply(spotNumber);
+            }
+        };
+    }
+
+    // Every spot of one type, e.g. for an overflow level of LARGE spots
+    static SpotLayout uniform(ParkingSpotType type) {
+        return spotNumber -> type;
+    }
+
+    // The pattern repeated from spot 1 onwards
+    static SpotLayout repeating(ParkingSpotType... pattern) {
+        if (pattern.length == 0) {
+            throw new IllegalArgumentException("Empty spot layout pattern");
+        }
+        ParkingSpotType[] types = pattern.clone();
+        return spotNumber -> types[(spotNumber - 1) % types.length];
+    }
+
+    // Places spots from firstSpotNumber on in rows of spotsPerRow, rowsPerLevel rows to a level, filling levels upwards
+    // from firstLevel
+    static IntFunction<SpotLocation> grid(int firstSpotNumber, int firstLevel, int rowsPerLevel, int spotsPerRow) {
+        if (rowsPerLevel <= 0 || spotsPerRow <= 0) {
+            throw new IllegalArgumentException("Empty grid: " + rowsPerLevel + " rows of " + spotsPerRow + " spots");
+        }
+        int perLevel = rowsPerLevel * spotsPerRow;
+        return spotNumber -> {
+            int n = spotNumber - firstSpotNumber;
+            return new SpotLocation(firstLevel + n / perLevel, n % perLevel / spotsPerRow, n % spotsPerRow);
+        };
+    }
+}
@@ -0,0 +1,99 @@
+package service;
+
+import domain.ParkingSpot;
+import domain.VehicleKind;
+import util.ParkingSpotType;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+// Structured filter over the spots of a ParkingService. Unlike an opaque Predicate, the type, occupancy,
+// vehicle and spot-number conditions each name an index the service keeps, so ParkingService.query can
+// plan them instead of testing every spot. Queries are immutable; each method returns a new query with
+// the condition added to those already there. A query is also a Predicate, answering the same question
+// for a single spot.
+public final class SpotQuery implements Predicate<ParkingSpot> {
+    private static final SpotQuery ALL = new SpotQuery(null, null, null, 1, Integer.MAX_VALUE, null);
+
+    final Set<ParkingSpotType> types; // Null for any type
+    final Boolean occupied; // Null for occupied or free
+    final Set<VehicleKind> vehicleKinds; // Null for any; otherwise only spots holding one of these kinds match
+    final int fromNumber; // Spot numbers from fromNumber to toNumber inclusive
+    final int toNumber;
+    final Predicate<ParkingSpot> residual; // Conditions no index can answer, null if there are none
+
+    private SpotQuery(Set<ParkingSpotType> types, Boolean occupied, Set<VehicleKind> vehicleKinds,
+                      int fromNumber, int toNumber, Predicate<ParkingSpot> residual) {
+        this.types = types;
+        this.occupied = occupied;
+        this.vehicleKinds = vehicleKinds;
+        this.fromNumber = fromNumber;
+        this.toNumber = toNumber;
+        this.residual = residual;
+    }
+
+    // Matches every spot
+    public static SpotQuery all() {
+        return ALL;
+    }
+
+    public SpotQuery ofType(ParkingSpotType first, ParkingSpotType... rest) {
+        EnumSet<ParkingSpotType> set = EnumSet.of(first, rest);
+        if (types != null) {
+            set.retainAll(types); // Both conditions must hold
+        }
+        return new SpotQuery(set, occupied, vehicleKinds, fromNumber, toNumber, residual);
+    }
+
+    public SpotQuery occupied() {
+        return withOccupied(true);
+    }
+
+    public SpotQuery free() {
+        return withOccupied(false);
+    }
+
+    // Spots holding a vehicle of one of the given kinds; implies occupied
+    public SpotQuery parkedWith(VehicleKind first, VehicleKind... rest) {
+        EnumSet<VehicleKind> set = EnumSet.of(first, rest);
+        if (vehicleKinds != null) {
+            set.retainAll(vehicleKinds);
+        }
+        return new SpotQuery(types, occupied, set, fromNumber, toNumber, residual);
+    }
+
+    // Spots numbered from fromNumber to toNumber, both inclusive
+    public SpotQuery numbered(int fromNumber, int toNumber) {
+        return new SpotQuery(types, occupied, vehicleKinds, Math.max(this.fromNumber, fromNumber),
+                Math.min(this.toNumber, toNumber), residual);
+    }
+
+    // Any further condition, tested only on the spots that pass the indexed ones
+    public SpotQuery where(Predicate<ParkingSpot> condition) {
+        return new SpotQuery(types, occupied, vehicleKinds, fromNumber, toNumber,
+                residual == null ? condition : residual.and(condition));
+    }
+
+    @Override
+    public boolean test(ParkingSpot spot) {
+        return (types == null || types.contains(spot.getType()))
+                && (occupied == null || occupied == spot.isOccupied())
+                && (vehicleKinds == null || vehicleKinds.contains(VehicleKind.of(spot.getCurrentVehicle())))
+                && spot.getSpotNumber() >= fromNumber && spot.getSpotNumber() <= toNumber
+                && (residual == null || residual.test(spot));
+    }
+
+    // True if any condition other than the spot-number range and residual can be answered from an index
+    boolean isIndexed() {
+        return types != null || occupied != null || vehicleKinds != null;
+    }
+
+    private SpotQuery withOccupied(boolean value) {
+        if (occupied != null && occupied != value) {
+            return new SpotQuery(EnumSet.noneOf(ParkingSpotType.class), occupied, vehicleKinds, fromNumber, toNumber,
+                    residual); // Occupied and free at once, nothing matches
+        }
+        return new SpotQuery(types, value, vehicleKinds, fromNumber, toNumber, residual);
+    }
+}
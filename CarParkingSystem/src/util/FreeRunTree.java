@@ -0,0 +1,61 @@
+package util;
+
+// Segment tree over slots that are free or taken, answering "first run of n free adjacent slots" in O(log n)
+public class FreeRunTree {
+    private final int size; // Number of leaves, a power of two
+    private final int[] prefix; // Free run starting at the left edge of each node
+    private final int[] suffix; // Free run ending at the right edge of each node
+    private final int[] best; // Longest free run anywhere inside each node
+
+    // All slots start taken; slots at or beyond capacity stay taken forever
+    public FreeRunTree(int capacity) {
+        size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        prefix = new int[2 * size];
+        suffix = new int[2 * size];
+        best = new int[2 * size];
+    }
+
+    public int capacity() {
+        return size;
+    }
+
+    public void set(int index, boolean free) {
+        int node = size + index;
+        int value = free ? 1 : 0;
+        prefix[node] = value;
+        suffix[node] = value;
+        best[node] = value;
+        int length = 1; // Width of the children of the node being recomputed
+        for (node >>>= 1; node > 0; node >>>= 1, length <<= 1) {
+            int left = 2 * node;
+            int right = left + 1;
+            prefix[node] = prefix[left] == length ? length + prefix[right] : prefix[left];
+            suffix[node] = suffix[right] == length ? length + suffix[left] : suffix[right];
+            best[node] = Math.max(Math.max(best[left], best[right]), suffix[left] + prefix[right]);
+        }
+    }
+
+    // Returns the first slot of the leftmost run of at least length free slots, or -1 if there is none
+    public int findFirstRun(int length) {
+        if (length <= 0 || best[1] < length) {
+            return -1;
+        }
+        int node = 1;
+        int start = 0; // First slot covered by node
+        int width = size;
+        while (node < size) {
+            int left = 2 * node;
+            int right = left + 1;
+            width >>>= 1;
+            if (best[left] >= length) {
+                node = left;
+            } else if (suffix[left] + prefix[right] >= length) {
+                return start + width - suffix[left]; // Run straddles the two halves
+            } else {
+                node = right;
+                start += width;
+            }
+        }
+        return start;
+    }
+}
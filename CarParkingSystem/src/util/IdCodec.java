@@ -0,0 +1,63 @@
+package util;
+
+// Packs the registration numbers ([A-Z] and 4 digits) and spot IDs ([A-Z] and 3 digits) the GUI
+// accepts into small ints, without allocating: letter * 10^digits + number.
+// Plates encode to 0..259999 and spot IDs to 0..25999; anything else encodes to -1.
+public final class IdCodec {
+    public static final int NOT_ENCODABLE = -1;
+    public static final int PLATE_CODES = 26 * 10_000; // Number of distinct plate codes
+    public static final int SPOT_ID_CODES = 26 * 1_000; // Number of distinct spot ID codes
+
+    private IdCodec() {
+    }
+
+    public static int encodePlate(String plate) {
+        return encode(plate, 4);
+    }
+
+    public static int encodeSpotId(String spotId) {
+        return encode(spotId, 3);
+    }
+
+    public static String decodePlate(int code) {
+        return decode(code, 4);
+    }
+
+    public static String decodeSpotId(int code) {
+        return decode(code, 3);
+    }
+
+    private static int encode(String value, int digits) {
+        if (value == null || value.length() != digits + 1) {
+            return NOT_ENCODABLE;
+        }
+        char letter = value.charAt(0);
+        if (letter < 'A' || letter > 'Z') {
+            return NOT_ENCODABLE;
+        }
+        int code = letter - 'A';
+        for (int i = 1; i <= digits; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_ENCODABLE;
+            }
+            code = code * 10 + (c - '0');
+        }
+        return code;
+    }
+
+    private static String decode(int code, int digits) {
+        int scale = digits == 4 ? 10_000 : 1_000;
+        if (code < 0 || code >= 26 * scale) {
+            throw new IllegalArgumentException("Not a " + (digits == 4 ? "plate" : "spot ID") + " code: " + code);
+        }
+        char[] chars = new char[digits + 1];
+        chars[0] = (char) ('A' + code / scale);
+        int number = code % scale;
+        for (int i = digits; i >= 1; i--) {
+            chars[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,150 @@
+package util;
+
+import java.util.Arrays;
+
+// Map from non-negative int keys to int values with open addressing and linear probing.
+// Keys and values sit side by side in one int array, so a lookup touches one cache line and
+// nothing is boxed. Deletion shifts later entries back instead of leaving tombstones.
+public class IntIntOpenHashMap {
+    public static final int NO_VALUE = -1; // Returned by get and remove for a missing key
+
+    private static final int EMPTY = -1; // Key of an unused entry
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] table; // Entry i is table[2 * i] (key) and table[2 * i + 1] (value)
+    private int mask; // Capacity - 1, capacity is a power of two
+    private int size;
+
+    public IntIntOpenHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntIntOpenHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != NO_VALUE;
+    }
+
+    // Value for the key, or NO_VALUE. Never loops forever or throws, even if the map is being
+    // changed by another thread, so callers may read optimistically and validate afterwards.
+    public int get(int key) {
+        int[] table = this.table; // One read, the array may be replaced by a resize
+        int mask = (table.length >>> 1) - 1;
+        for (int i = hash(key) & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            int k = table[2 * i];
+            if (k == key) {
+                return table[2 * i + 1];
+            }
+            if (k == EMPTY) {
+                return NO_VALUE;
+            }
+        }
+        return NO_VALUE;
+    }
+
+    // Maps the key to the value, returning the previous value or NO_VALUE
+    public int put(int key, int value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Keys must not be negative: " + key);
+        }
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int k = table[2 * i];
+            if (k == key) {
+                int previous = table[2 * i + 1];
+                table[2 * i + 1] = value;
+                return previous;
+            }
+            if (k == EMPTY) {
+                table[2 * i + 1] = value; // Value first, so a racing reader never sees the key with a stale value
+                table[2 * i] = key;
+                if (++size > (mask + 1) >>> 1) { // Keep at most half full so probe runs stay short
+                    resize((mask + 1) << 1);
+                }
+                return NO_VALUE;
+            }
+        }
+    }
+
+    // Removes the key, returning its value or NO_VALUE
+    public int remove(int key) {
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int k = table[2 * i];
+            if (k == EMPTY) {
+                return NO_VALUE;
+            }
+            if (k == key) {
+                int previous = table[2 * i + 1];
+                shiftBack(i);
+                size--;
+                return previous;
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(table, EMPTY);
+        size = 0;
+    }
+
+    // Fills the hole at index by moving back any later entry of the run that hashes at or before it
+    private void shiftBack(int hole) {
+        for (int i = (hole + 1) & mask; ; i = (i + 1) & mask) {
+            int k = table[2 * i];
+            if (k == EMPTY) {
+                break;
+            }
+            int home = hash(k) & mask;
+            // The entry may move to the hole unless its home lies cyclically in (hole, i]
+            boolean homeAfterHole = hole <= i ? (home > hole && home <= i) : (home > hole || home <= i);
+            if (!homeAfterHole) {
+                table[2 * hole] = k;
+                table[2 * hole + 1] = table[2 * i + 1];
+                hole = i;
+            }
+        }
+        table[2 * hole] = EMPTY;
+    }
+
+    private void resize(int capacity) {
+        int[] old = table;
+        allocate(capacity);
+        for (int i = 0; i < old.length; i += 2) {
+            int k = old[i];
+            if (k != EMPTY) {
+                int j = hash(k) & mask;
+                while (table[2 * j] != EMPTY) {
+                    j = (j + 1) & mask;
+                }
+                table[2 * j] = k;
+                table[2 * j + 1] = old[i + 1];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        int[] table = new int[2 * capacity];
+        Arrays.fill(table, EMPTY);
+        mask = capacity - 1;
+        this.table = table; // Published filled, for optimistic readers
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2 * (long) expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // Fibonacci hashing spreads the sequential codes plates and spot IDs encode to
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,164 @@
+package util;
+
+// Intervals [start, end) tagged with an int value, kept in a treap ordered by start and then value, each node also
+// holding the largest end in its subtree. Finding an interval that covers a whole window then takes O(log n) expected
+// time: among the intervals starting at or before the window, follow the subtree maxima to one ending at or after it.
+// A value may tag several intervals as long as their starts differ.
+public class IntervalTree {
+    private Node root;
+    private int size;
+    private int seed = 0x2545F491; // Xorshift state for node priorities
+
+    public int size() {
+        return size;
+    }
+
+    public void add(long start, long end, int value) {
+        if (start >= end) {
+            throw new IllegalArgumentException("Empty interval [" + start + ", " + end + ")");
+        }
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        root = insert(root, new Node(start, end, value, seed));
+        size++;
+    }
+
+    // Removes the interval with the given start and value; false if there is none
+    public boolean remove(long start, int value) {
+        int before = size;
+        root = delete(root, start, value);
+        return size < before;
+    }
+
+    // Value of an interval with start <= from and end >= to, or -1 if there is none
+    public int findCovering(long from, long to) {
+        Node node = root;
+        while (node != null && node.maxEnd >= to) {
+            if (node.start > from) {
+                node = node.left; // Everything to the right starts too late
+            } else if (node.end >= to) {
+                return node.value;
+            } else if (node.left != null && node.left.maxEnd >= to) {
+                return descend(node.left, to); // Every interval on the left starts early enough
+            } else {
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    // Follows the subtree maxima down to an interval ending at or after to, which the subtree is known to hold
+    private static int descend(Node node, long to) {
+        while (node.end < to) {
+            node = node.left != null && node.left.maxEnd >= to ? node.left : node.right;
+        }
+        return node.value;
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (added.priority > node.priority) {
+            Node[] halves = split(node, added.start, added.value);
+            added.left = halves[0];
+            added.right = halves[1];
+            added.update();
+            return added;
+        }
+        if (before(added.start, added.value, node)) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        node.update();
+        return node;
+    }
+
+    private Node delete(Node node, long start, int value) {
+        if (node == null) {
+            return null;
+        }
+        if (node.start == start && node.value == value) {
+            size--;
+            return merge(node.left, node.right);
+        }
+        if (before(start, value, node)) {
+            node.left = delete(node.left, start, value);
+        } else {
+            node.right = delete(node.right, start, value);
+        }
+        node.update();
+        return node;
+    }
+
+    // Splits a subtree into the nodes ordered before (start, value) and the rest
+    private static Node[] split(Node node, long start, int value) {
+        if (node == null) {
+            return new Node[2];
+        }
+        Node[] halves;
+        if (before(start, value, node)) {
+            halves = split(node.left, start, value);
+            node.left = halves[1];
+            halves[1] = node;
+        } else {
+            halves = split(node.right, start, value);
+            node.right = halves[0];
+            halves[0] = node;
+        }
+        node.update();
+        return halves;
+    }
+
+    // Joins two subtrees where every node of the first is ordered before every node of the second
+    private static Node merge(Node first, Node second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            first.update();
+            return first;
+        }
+        second.left = merge(first, second.left);
+        second.update();
+        return second;
+    }
+
+    private static boolean before(long start, int value, Node node) {
+        return start < node.start || start == node.start && value < node.value;
+    }
+
+    private static final class Node {
+        private final long start;
+        private final long end;
+        private final int value;
+        private final int priority;
+        private long maxEnd; // Largest end in the subtree rooted here
+        private Node left;
+        private Node right;
+
+        private Node(long start, long end, int value, int priority) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+
+        private void update() {
+            maxEnd = end;
+            if (left != null && left.maxEnd > maxEnd) {
+                maxEnd = left.maxEnd;
+            }
+            if (right != null && right.maxEnd > maxEnd) {
+                maxEnd = right.maxEnd;
+            }
+        }
+    }
+}
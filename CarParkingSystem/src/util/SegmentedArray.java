@@ -0,0 +1,61 @@
+package util;
+
+import java.util.Arrays;
+
+// Array stored as fixed-size segments behind a small directory. Growing adds segments and shrinking drops them,
+// so elements are never copied; only the directory of segment references is, and it is published through a
+// volatile field, so readers without the writer's lock see the old directory or the new one, never a partial copy.
+// Writers must be serialized by the caller.
+public final class SegmentedArray<E> {
+    private static final int SEGMENT_BITS = 12; // 4096 elements per segment
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    private volatile Object[][] segments;
+    private volatile int length;
+
+    public SegmentedArray(int length) {
+        segments = new Object[0][];
+        resize(length);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    // Element at index, or null if it is unset or beyond the end
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Object[][] directory = segments;
+        int s = index >>> SEGMENT_BITS;
+        return s < directory.length ? (E) directory[s][index & (SEGMENT_SIZE - 1)] : null;
+    }
+
+    public void set(int index, E element) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        segments[index >>> SEGMENT_BITS][index & (SEGMENT_SIZE - 1)] = element;
+    }
+
+    // Sets the length, adding segments for new elements (all null) or dropping segments no longer needed
+    public void resize(int newLength) {
+        if (newLength < 0) {
+            throw new IllegalArgumentException("Negative length: " + newLength);
+        }
+        Object[][] directory = segments;
+        int needed = (newLength + SEGMENT_SIZE - 1) >>> SEGMENT_BITS;
+        if (newLength < length) {
+            for (int i = newLength; i < Math.min(length, needed << SEGMENT_BITS); i++) {
+                directory[i >>> SEGMENT_BITS][i & (SEGMENT_SIZE - 1)] = null; // Tail of the last kept segment
+            }
+        }
+        if (needed != directory.length) {
+            Object[][] resized = Arrays.copyOf(directory, needed); // Copies segment references only
+            for (int s = directory.length; s < needed; s++) {
+                resized[s] = new Object[SEGMENT_SIZE];
+            }
+            segments = resized;
+        }
+        length = newLength;
+    }
+}
@@ -0,0 +1,281 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+// Streaming CSV of spots and the cars parked in them, one row per spot:
+// spot_id,registration,make,model,year,parked_at
+// A vacant spot leaves the car columns empty. Fields holding a comma, quote or line break are
+// quoted, with quotes doubled. Rows are read and written through a buffered file channel one at
+// a time, so memory use does not grow with the size of the file.
+public class SpotCsv {
+    public static final String HEADER = "spot_id,registration,make,model,year,parked_at";
+
+    private static final int FIELDS = 6;
+    private static final int BUFFER_CHARS = 1 << 16;
+
+    private SpotCsv() {
+    }
+
+    public static Reader open(Path file) throws IOException {
+        return new Reader(file);
+    }
+
+    public static Writer create(Path file) throws IOException {
+        return new Writer(file);
+    }
+
+    // Cursor over the rows of a file; the accessors describe the row last read by next()
+    public static class Reader implements AutoCloseable {
+        private final FileChannel channel;
+        private final BufferedReader in;
+        private final String[] fields = new String[FIELDS]; // Fields of the current row, null when empty
+        private final StringBuilder field = new StringBuilder(); // Reused while unquoting a field
+        private long line; // Line number of the current row's first line
+        private long linesRead;
+
+        private Reader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8), BUFFER_CHARS);
+        }
+
+        // Moves to the next row, skipping the header and blank lines; false at the end of the file
+        public boolean next() throws IOException {
+            String text;
+            do {
+                text = in.readLine();
+                if (text == null) {
+                    return false;
+                }
+                line = ++linesRead;
+            } while (text.isEmpty() || line == 1 && text.equals(HEADER));
+            if (text.indexOf('"') < 0) {
+                splitPlain(text);
+            } else {
+                splitQuoted(text);
+            }
+            if (fields[0] == null) {
+                throw new IOException("Line " + line + ": missing spot ID");
+            }
+            return true;
+        }
+
+        public long lineNumber() {
+            return line;
+        }
+
+        // Bytes of the file consumed so far, read ahead of the current row by up to a buffer
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        public String spotId() {
+            return fields[0];
+        }
+
+        public boolean isOccupied() {
+            return fields[1] != null;
+        }
+
+        public String registration() {
+            return fields[1];
+        }
+
+        public String make() {
+            return fields[2];
+        }
+
+        public String model() {
+            return fields[3];
+        }
+
+        public int year() throws IOException {
+            try {
+                return fields[4] == null ? 0 : Integer.parseInt(fields[4]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + line + ": invalid year " + fields[4]);
+            }
+        }
+
+        // Time the car parked, or null if the row does not say
+        public LocalDateTime parkedAt() throws IOException {
+            try {
+                return fields[5] == null ? null : LocalDateTime.parse(fields[5]);
+            } catch (DateTimeParseException e) {
+                throw new IOException("Line " + line + ": invalid parking time " + fields[5]);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close(); // Also closes the channel
+        }
+
+        // Splits a row without quotes, the common case, with no copying beyond the field strings
+        private void splitPlain(String text) throws IOException {
+            int start = 0;
+            for (int i = 0; i < FIELDS; i++) {
+                int end = i == FIELDS - 1 ? text.length() : text.indexOf(',', start);
+                if (end < 0 || i == FIELDS - 1 && text.indexOf(',', start) >= 0) {
+                    throw new IOException("Line " + line + ": expected " + FIELDS + " fields");
+                }
+                fields[i] = end == start ? null : text.substring(start, end);
+                start = end + 1;
+            }
+        }
+
+        // Splits a row with quoted fields, reading on while a quoted field spans lines
+        private void splitQuoted(String text) throws IOException {
+            int n = 0;
+            int i = 0;
+            while (true) {
+                field.setLength(0);
+                boolean quoted = i < text.length() && text.charAt(i) == '"';
+                if (quoted) {
+                    i++;
+                    while (true) {
+                        if (i == text.length()) {
+                            String more = in.readLine();
+                            if (more == null) {
+                                throw new IOException("Line " + line + ": unterminated quoted field");
+                            }
+                            linesRead++;
+                            field.append('\n');
+                            text = more;
+                            i = 0;
+                        } else if (text.charAt(i) != '"') {
+                            field.append(text.charAt(i++));
+                        } else if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                            field.append('"'); // Doubled quote
+                            i += 2;
+                        } else {
+                            i++; // Closing quote
+                            break;
+                        }
+                    }
+                } else {
+                    int end = text.indexOf(',', i);
+                    end = end < 0 ? text.length() : end;
+                    field.append(text, i, end);
+                    i = end;
+                }
+                if (n == FIELDS) {
+                    throw new IOException("Line " + line + ": expected " + FIELDS + " fields");
+                }
+                fields[n++] = field.length() == 0 && !quoted ? null : field.toString();
+                if (i == text.length()) {
+                    break;
+                }
+                if (text.charAt(i) != ',') {
+                    throw new IOException("Line " + line + ": unexpected character after quoted field");
+                }
+                i++;
+            }
+            if (n != FIELDS) {
+                throw new IOException("Line " + line + ": expected " + FIELDS + " fields");
+            }
+        }
+    }
+
+    // Writes rows through a buffered file channel, header first. Rows go to a temporary file next to the CSV file,
+    // which only replaces it once complete, so a failed or interrupted export leaves the old file as it was.
+    public static class Writer implements AutoCloseable {
+        private final Path file;
+        private final Path temp;
+        private final FileChannel channel;
+        private final BufferedWriter out;
+        private boolean failed; // Whether a write threw, after which close discards the file
+
+        private Writer(Path file) throws IOException {
+            this.file = file;
+            temp = file.resolveSibling(file.getFileName() + ".tmp");
+            channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_CHARS);
+            out.write(HEADER);
+            out.newLine();
+        }
+
+        public void vacant(String spotId) throws IOException {
+            write(spotId, null, null, null, 0, null);
+        }
+
+        public void write(String spotId, String registration, String make, String model, int year,
+                          LocalDateTime parkedAt) throws IOException {
+            if (failed) {
+                throw new IOException("Spot CSV write already failed");
+            }
+            failed = true; // Until the row is complete
+            field(spotId);
+            out.write(',');
+            field(registration);
+            out.write(',');
+            field(make);
+            out.write(',');
+            field(model);
+            out.write(',');
+            if (registration != null) {
+                out.write(Integer.toString(year));
+            }
+            out.write(',');
+            if (parkedAt != null) {
+                out.write(parkedAt.toString());
+            }
+            out.newLine();
+            failed = false;
+        }
+
+        // Finishes the file and moves it over the CSV file, or throws the temporary file away if a write failed
+        @Override
+        public void close() throws IOException {
+            boolean complete = false;
+            try {
+                try (channel) {
+                    if (failed) {
+                        return;
+                    }
+                    out.flush();
+                    channel.force(false);
+                }
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+                complete = true;
+            } finally {
+                if (!complete) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+
+        private void field(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            boolean quote = value.isEmpty(); // An empty string must not read back as null
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+// Compact binary snapshot of a spot table, read through a memory-mapped file.
+// Layout: header | records | offset table. Each record is a fixed part
+// (spot type, vehicle kind, year or capacity, parked-at) followed by length-prefixed
+// UTF-8 strings (spot id, registration, make or colour, model). Readers decode a field
+// only when asked for it, so opening a snapshot costs nothing per record.
+public class SpotSnapshot implements AutoCloseable {
+    public static final byte VACANT = 0;
+    public static final byte CAR = 1;
+    public static final byte TRUCK = 2;
+
+    private static final int MAGIC = 0x53504f54; // "SPOT"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 4; // Magic, version, count, offset table position
+    private static final int FIXED_BYTES = 1 + 1 + 4 + 8; // Type, kind, year or capacity, parked-at
+    private static final int MAX_STRING_BYTES = 0xFFFE; // 0xFFFF is the length of a null string
+    private static final int MAX_RECORD_BYTES = FIXED_BYTES + 4 * (2 + MAX_STRING_BYTES);
+    private static final long NOT_PARKED = Long.MIN_VALUE;
+    private static final ParkingSpotType[] TYPES = ParkingSpotType.values();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int offsetTable; // Position of the offset table: count ints, one per record
+
+    private SpotSnapshot(FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a spot snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported spot snapshot version " + buffer.getInt(4));
+        }
+        count = buffer.getInt(8);
+        offsetTable = buffer.getInt(12);
+    }
+
+    public static SpotSnapshot open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Spot snapshot too large to map: " + size + " bytes");
+            }
+            return new SpotSnapshot(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static Writer create(Path file) throws IOException {
+        return new Writer(file);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Spot type, or null for spots that have none
+    public ParkingSpotType spotType(int index) {
+        byte type = buffer.get(record(index));
+        if (type == -1) {
+            return null;
+        }
+        if (type < 0 || type >= TYPES.length) {
+            throw new IllegalStateException("Not a spot snapshot: spot " + index + " has type " + type);
+        }
+        return TYPES[type];
+    }
+
+    public byte vehicleKind(int index) {
+        return buffer.get(record(index) + 1);
+    }
+
+    public boolean isOccupied(int index) {
+        return vehicleKind(index) != VACANT;
+    }
+
+    // Car year, or truck capacity in kg
+    public int number(int index) {
+        return buffer.getInt(record(index) + 2);
+    }
+
+    public LocalDateTime parkedAt(int index) {
+        long millis = buffer.getLong(record(index) + 6);
+        return millis == NOT_PARKED ? null : LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+                Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    public String spotId(int index) {
+        return string(index, 0);
+    }
+
+    public String registration(int index) {
+        return string(index, 1);
+    }
+
+    // Car make, or the colour of a domain car
+    public String make(int index) {
+        return string(index, 2);
+    }
+
+    public String model(int index) {
+        return string(index, 3);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close(); // The mapping itself is released once the buffer is unreachable
+    }
+
+    private int record(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Spot " + index + " not in snapshot of " + count);
+        }
+        return buffer.getInt(offsetTable + index * 4); // Mapped files are under 2 GB, so offsets fit in an int
+    }
+
+    // Decodes the n-th string of a record, skipping the ones before it by their lengths
+    private String string(int index, int n) {
+        int position = record(index) + FIXED_BYTES;
+        for (int i = 0; i < n; i++) {
+            int skipped = Short.toUnsignedInt(buffer.getShort(position));
+            position += 2 + (skipped == 0xFFFF ? 0 : skipped); // 0xFFFF marks a null string
+        }
+        int length = Short.toUnsignedInt(buffer.getShort(position));
+        if (length == 0xFFFF) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(position + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Streams records to a snapshot file through a reusable direct buffer. Records go to a temporary file next to the
+    // snapshot, which only replaces it once complete, so a failed or interrupted write leaves the old snapshot as it was.
+    public static class Writer implements AutoCloseable {
+        private final Path file;
+        private final Path temp;
+        private final FileChannel channel;
+        private final ByteBuffer out = ByteBuffer.allocateDirect(MAX_RECORD_BYTES); // Holds the largest possible record
+        private int[] offsets = new int[1024];
+        private int count;
+        private int position = HEADER_BYTES;
+        private boolean failed; // Whether a write threw, after which close discards the file
+
+        private Writer(Path file) throws IOException {
+            this.file = file;
+            temp = file.resolveSibling(file.getFileName() + ".tmp");
+            channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_BYTES); // Header is written last, once the count is known
+        }
+
+        public void vacant(String spotId, ParkingSpotType type) throws IOException {
+            write(spotId, type, VACANT, null, null, null, 0, null);
+        }
+
+        public void write(String spotId, ParkingSpotType type, byte vehicleKind, String registration,
+                          String make, String model, int number, LocalDateTime parkedAt) throws IOException {
+            if (failed) {
+                throw new IOException("Spot snapshot write already failed");
+            }
+            failed = true; // Until the record is complete
+            byte[][] strings = {utf8(spotId), utf8(registration), utf8(make), utf8(model)};
+            int length = FIXED_BYTES;
+            for (byte[] s : strings) {
+                length += 2 + (s == null ? 0 : s.length);
+            }
+            if ((long) position + length + 4L * (count + 1) > Integer.MAX_VALUE) {
+                throw new IOException("Spot snapshot would exceed 2 GB");
+            }
+            if (out.remaining() < length) {
+                flush();
+            }
+            out.put(type == null ? -1 : (byte) type.ordinal());
+            out.put(vehicleKind);
+            out.putInt(number);
+            out.putLong(parkedAt == null ? NOT_PARKED : parkedAt.toInstant(ZoneOffset.UTC).toEpochMilli());
+            for (byte[] s : strings) {
+                out.putShort(s == null ? (short) 0xFFFF : (short) s.length);
+                if (s != null) {
+                    out.put(s);
+                }
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = position; // Only once the record is in the buffer
+            position += length;
+            failed = false;
+        }
+
+        // Finishes the file and moves it over the snapshot, or throws the temporary file away if a write failed
+        @Override
+        public void close() throws IOException {
+            boolean complete = false;
+            try {
+                try (channel) {
+                    if (failed) {
+                        return;
+                    }
+                    int offsetTable = position;
+                    for (int i = 0; i < count; i++) {
+                        if (out.remaining() < 4) {
+                            flush();
+                        }
+                        out.putInt(offsets[i]);
+                    }
+                    flush();
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                    header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(offsetTable).flip();
+                    while (header.hasRemaining()) {
+                        channel.write(header, header.position());
+                    }
+                    channel.force(false);
+                }
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+                complete = true;
+            } finally {
+                if (!complete) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+        }
+
+        private static byte[] utf8(String value) {
+            if (value == null) {
+                return null;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_STRING_BYTES) {
+                throw new IllegalArgumentException("String too long for a spot snapshot: " + bytes.length + " UTF-8 bytes");
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+// Hashed timing wheel: timeouts are hashed by their deadline tick into a ring of buckets, each a
+// doubly linked list, so scheduling and cancelling cost O(1) whatever the number of timeouts.
+// advance() expires what is due by the clock, visiting only the buckets of the ticks that have passed.
+// Time comes from an injected millisecond clock, so tests can move it forward by hand.
+public class TimingWheel<T> {
+    private final long tickMillis;
+    private final Timeout<T>[] buckets; // Head of each bucket's list
+    private final int mask; // buckets.length - 1, used instead of a modulo
+    private final LongSupplier clock; // Current time in milliseconds
+    private final Consumer<T> onExpiry; // Called outside the lock with the item of each expired timeout
+    private final long startMillis; // Tick 0 starts here
+    private long tick; // Next tick to process
+    private int size; // Pending timeouts
+
+    public TimingWheel(long tickMillis, int minBuckets, LongSupplier clock, Consumer<T> onExpiry) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        int size = Integer.highestOneBit(Math.max(1, minBuckets - 1)) << 1;
+        this.tickMillis = tickMillis;
+        @SuppressWarnings("unchecked") // Only Timeout<T> is ever stored in the ring
+        Timeout<T>[] ring = (Timeout<T>[]) new Timeout<?>[size];
+        this.buckets = ring;
+        this.mask = size - 1;
+        this.clock = clock;
+        this.onExpiry = onExpiry;
+        this.startMillis = clock.getAsLong();
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    // Schedules the item to expire once the clock has passed now + delayMillis; a delay of 0 or less expires on the next advance
+    public synchronized Timeout<T> schedule(T item, long delayMillis) {
+        long deadline = clock.getAsLong() + Math.max(0, delayMillis);
+        long deadlineTick = Math.max(tick, Math.floorDiv(deadline - startMillis, tickMillis)); // Overdue goes in the next tick
+        Timeout<T> timeout = new Timeout<>(item, deadline);
+        timeout.rounds = (deadlineTick - tick) / buckets.length; // Laps of the wheel to wait before expiring
+        timeout.bucket = (int) (deadlineTick & mask);
+        timeout.next = buckets[timeout.bucket];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        buckets[timeout.bucket] = timeout;
+        size++;
+        return timeout;
+    }
+
+    // Removes a pending timeout; false if it has already expired or been cancelled
+    public synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout.state != Timeout.PENDING) {
+            return false;
+        }
+        unlink(timeout);
+        timeout.state = Timeout.CANCELLED;
+        return true;
+    }
+
+    // Expires every timeout whose tick has passed by the clock, returning how many expired.
+    // Callbacks run on the calling thread after the wheel's lock has been released.
+    public int advance() {
+        List<T> expired = new ArrayList<>();
+        synchronized (this) {
+            long target = Math.floorDiv(clock.getAsLong() - startMillis, tickMillis); // Ticks before this one are over
+            for (; tick < target; tick++) {
+                Timeout<T> timeout = buckets[(int) (tick & mask)];
+                while (timeout != null) {
+                    Timeout<T> next = timeout.next;
+                    if (timeout.rounds <= 0) {
+                        unlink(timeout);
+                        timeout.state = Timeout.EXPIRED;
+                        expired.add(timeout.item);
+                    } else {
+                        timeout.rounds--; // Due on a later lap
+                    }
+                    timeout = next;
+                }
+            }
+        }
+        for (T item : expired) {
+            onExpiry.accept(item);
+        }
+        return expired.size();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        size--;
+    }
+
+    // Handle to a scheduled item, also its node in the bucket list; fields are guarded by the wheel
+    public static class Timeout<T> {
+        private static final int PENDING = 0;
+        private static final int EXPIRED = 1;
+        private static final int CANCELLED = 2;
+
+        private final T item;
+        private final long deadline;
+        private long rounds;
+        private int bucket;
+        private int state = PENDING;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        // Clock time in milliseconds at which the item becomes due
+        public long getDeadline() {
+            return deadline;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package util;
+
+import java.util.Arrays;
+
+// Bit set with a summary level marking the non-empty words, so nextSetBit skips 4096 bits per summary word
+public class TwoLevelBitSet {
+    private long[] words; // Bit i of the set lives in words[i >>> 6]
+    private long[] summary; // Bit w is set when words[w] != 0
+
+    public TwoLevelBitSet(int nbits) {
+        words = new long[wordsFor(nbits)];
+        summary = new long[wordsFor(words.length)];
+    }
+
+    public void set(int index) {
+        int w = index >>> 6;
+        words[w] |= 1L << index; // Shift distance is taken mod 64
+        summary[w >>> 6] |= 1L << w;
+    }
+
+    public void clear(int index) {
+        int w = index >>> 6;
+        words[w] &= ~(1L << index);
+        if (words[w] == 0) {
+            summary[w >>> 6] &= ~(1L << w);
+        }
+    }
+
+    public boolean get(int index) {
+        int w = index >>> 6;
+        return w < words.length && (words[w] & (1L << index)) != 0;
+    }
+
+    // Returns the index of the first set bit at or after fromIndex, or -1 if there is none
+    public int nextSetBit(int fromIndex) {
+        int w = fromIndex >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = words[w] & (-1L << fromIndex);
+        if (word != 0) {
+            return (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+        int next = w + 1; // Look for the next non-empty word through the summary
+        int s = next >>> 6;
+        if (s >= summary.length) {
+            return -1;
+        }
+        long bits = summary[s] & (-1L << next);
+        while (bits == 0) {
+            if (++s >= summary.length) {
+                return -1;
+            }
+            bits = summary[s];
+        }
+        int nw = (s << 6) + Long.numberOfTrailingZeros(bits);
+        return (nw << 6) + Long.numberOfTrailingZeros(words[nw]);
+    }
+
+    // Grows the set so it can hold nbits bits; existing bits are kept
+    public void ensureCapacity(int nbits) {
+        int needed = wordsFor(nbits);
+        if (needed > words.length) {
+            words = Arrays.copyOf(words, Math.max(needed, words.length * 2));
+            summary = Arrays.copyOf(summary, wordsFor(words.length));
+        }
+    }
+
+    private static int wordsFor(int nbits) {
+        return Math.max(1, (nbits + 63) >>> 6);
+    }
+}
@@ -0,0 +1,234 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the car park journal: the car park a journal opens to, with and without a
+ * checkpoint and after a torn last record, and changes refused by a closed journal.
+ *
+ * @author
+ * @version 5.2.1
+ */
+class CarParkJournalTest {
+    @TempDir
+    Path dir;
+
+    /**
+     * Every kind of change written to a journal must come back when it is opened again, in the
+     * car park and in its indexes.
+     */
+    @Test
+    void reopenedJournalReplaysEveryChange() throws IOException {
+        Path file = dir.resolve("car-park.journal");
+        CarPark carPark = new CarPark(false);
+        try (CarParkJournal ignored = CarParkJournal.open(file, CarParkJournal.FsyncPolicy.ON_COMMIT, carPark)) {
+            carPark.addSpot("X1");
+            carPark.parkCar("X1", new Car("R0", "Fiat", "Panda", 2010));
+            carPark.resetCarPark(); // Vacates X1 on replay too
+            carPark.addSpots(new String[] {"A1", "A2", "A3", "A4"},
+                    new Car[] {new Car("R1", "Ford", "Focus", 2015), null, new Car("R3", "Audi", "A3", 2020), null}, 4);
+            carPark.parkCar("A2", new Car("R2", "Ford", "Fiesta", 2018));
+            carPark.removeCarBySpot("A1");
+            carPark.removeCarByRegNumber("R3");
+            carPark.parkCar("A3", new Car("R5", "Ford", "Ka", 2012));
+            carPark.deleteSpot("A4");
+            carPark.addSpot("B1");
+        }
+
+        CarPark reopened = new CarPark(false);
+        CarParkJournal.open(file, CarParkJournal.FsyncPolicy.NEVER, reopened).close();
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("X1", null);
+        expected.put("A1", null);
+        expected.put("A2", "R2");
+        expected.put("A3", "R5");
+        expected.put("B1", null);
+        assertEquals(expected, contents(carPark));
+        assertEquals(expected, contents(reopened));
+        assertEquals("A3", reopened.findCarByRegNumber("R5").getId());
+        assertNull(reopened.findCarByRegNumber("R0"));
+        assertEquals(2, reopened.findCarsByMake("ford").size());
+        assertTrue(reopened.isIndexConsistent());
+    }
+
+    /**
+     * A journal opened after a checkpoint must start from the checkpoint's snapshot and replay
+     * only the changes that followed it.
+     */
+    @Test
+    void checkpointIsFollowedByReplayOfTail() throws IOException {
+        Path file = dir.resolve("car-park.journal");
+        CarPark carPark = new CarPark(false);
+        long beforeCheckpoint;
+        try (CarParkJournal journal = CarParkJournal.open(file, CarParkJournal.FsyncPolicy.ON_COMMIT, carPark)) {
+            for (int i = 0; i < 100; i++) {
+                carPark.addSpot("A" + i);
+                carPark.parkCar("A" + i, new Car("R" + i, "Ford", "Focus", 2015));
+            }
+            beforeCheckpoint = Files.size(file);
+            journal.checkpoint();
+            assertTrue(Files.size(file) < beforeCheckpoint, "Checkpoint left the journal at " + Files.size(file) + " bytes");
+            carPark.removeCarBySpot("A0");
+            carPark.removeCarBySpot("A1");
+            carPark.deleteSpot("A1");
+            carPark.addSpot("B1");
+            carPark.parkCar("B1", new Car("R200", "Audi", "A3", 2020));
+        }
+        assertEquals(1, snapshotFiles().size());
+
+        CarPark reopened = new CarPark(false);
+        CarParkJournal.open(file, CarParkJournal.FsyncPolicy.NEVER, reopened).close();
+        assertEquals(contents(carPark), contents(reopened));
+        assertFalse(reopened.findSpot("A0").isOccupied());
+        assertNull(reopened.findSpot("A1"));
+        assertEquals("B1", reopened.findCarByRegNumber("R200").getId());
+        assertTrue(reopened.isIndexConsistent());
+    }
+
+    /**
+     * A last record cut short or garbled by a crash must be dropped on opening, leaving the car
+     * park as the records before it made it and new records following the last good one.
+     */
+    @Test
+    void tornOrCorruptLastRecordIsCutOff() throws IOException {
+        for (boolean corrupt : new boolean[] {false, true}) {
+            Path file = dir.resolve(corrupt ? "corrupt.journal" : "torn.journal");
+            CarPark carPark = new CarPark(false);
+            try (CarParkJournal ignored = CarParkJournal.open(file, CarParkJournal.FsyncPolicy.ON_COMMIT, carPark)) {
+                carPark.addSpot("A1");
+                carPark.addSpot("A2");
+                carPark.parkCar("A1", new Car("R1", "Ford", "Focus", 2015));
+            }
+            Map<String, String> intact = contents(carPark);
+            long intactLength = Files.size(file);
+            try (CarParkJournal ignored = CarParkJournal.open(file, CarParkJournal.FsyncPolicy.ON_COMMIT, carPark)) {
+                carPark.parkCar("A2", new Car("R2", "Audi", "A3", 2020));
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (corrupt) {
+                    ByteBuffer last = ByteBuffer.allocate(1);
+                    channel.read(last, channel.size() - 1);
+                    last.put(0, (byte) ~last.get(0));
+                    channel.write(last.rewind(), channel.size() - 1); // Flips the last payload byte, so its CRC fails
+                } else {
+                    channel.truncate(channel.size() - 3);
+                }
+            }
+
+            CarPark reopened = new CarPark(false);
+            try (CarParkJournal ignored = CarParkJournal.open(file, CarParkJournal.FsyncPolicy.ON_COMMIT, reopened)) {
+                assertEquals(intact, contents(reopened));
+                assertNull(reopened.findCarByRegNumber("R2"));
+                assertEquals(intactLength, Files.size(file));
+                reopened.parkCar("A2", new Car("R3", "Fiat", "Panda", 2011));
+            }
+            CarPark again = new CarPark(false);
+            CarParkJournal.open(file, CarParkJournal.FsyncPolicy.NEVER, again).close();
+            assertEquals(contents(reopened), contents(again));
+            assertEquals("A2", again.findCarByRegNumber("R3").getId());
+        }
+    }
+
+    /**
+     * A change the journal refuses must leave the car park, its indexes and its listeners as
+     * they were, and reopening the journal must give the same car park.
+     */
+    @Test
+    void refusedChangeLeavesCarParkUnchanged() throws IOException {
+        Path file = dir.resolve("car-park.journal");
+        CarPark carPark = new CarPark(false);
+        CarParkJournal journal = CarParkJournal.open(file, CarParkJournal.FsyncPolicy.NEVER, carPark);
+        carPark.addSpot("A1");
+        carPark.addSpot("A2");
+        carPark.parkCar("A1", new Car("R1", "Ford", "Focus", 2015));
+        journal.close();
+        Map<String, String> before = contents(carPark);
+        List<CarParkEvent> events = new ArrayList<>();
+        carPark.addCarParkListener(events::add);
+
+        assertThrows(IllegalStateException.class, () -> carPark.parkCar("A2", new Car("R2", "Ford", "Fiesta", 2018)));
+        assertThrows(IllegalStateException.class, () -> carPark.removeCarBySpot("A1"));
+        assertThrows(IllegalStateException.class, () -> carPark.removeCarByRegNumber("R1"));
+        assertThrows(IllegalStateException.class, () -> carPark.addSpot("A3"));
+        assertThrows(IllegalStateException.class,
+                () -> carPark.addSpots(new String[] {"A4"}, new Car[] {new Car("R4", "Audi", "A3", 2020)}, 1));
+        assertThrows(IllegalStateException.class, () -> carPark.deleteSpot("A2"));
+        assertThrows(IllegalStateException.class, carPark::resetCarPark);
+
+        assertEquals(before, contents(carPark));
+        assertNull(carPark.findCarByRegNumber("R2"));
+        assertEquals(1, carPark.findCarsByMake("ford").size());
+        assertFalse(carPark.findSpot("A2").isOccupied());
+        assertTrue(carPark.isIndexConsistent());
+        assertTrue(events.isEmpty(), "Listeners told about changes that were not made: " + events);
+
+        CarPark reopened = new CarPark(false);
+        CarParkJournal.open(file, CarParkJournal.FsyncPolicy.NEVER, reopened).close();
+        assertEquals(before, contents(reopened));
+    }
+
+    /**
+     * Opening a journal must delete the snapshots of checkpoints it no longer starts from, such
+     * as the one a crash between shortening the journal and deleting the old snapshot leaves.
+     */
+    @Test
+    void openDeletesOrphanedCheckpointSnapshots() throws IOException {
+        Path file = dir.resolve("car-park.journal");
+        CarPark carPark = new CarPark(false);
+        try (CarParkJournal journal = CarParkJournal.open(file, CarParkJournal.FsyncPolicy.NEVER, carPark)) {
+            carPark.addSpot("A1");
+            journal.checkpoint();
+            carPark.parkCar("A1", new Car("R1", "Ford", "Focus", 2015));
+            journal.checkpoint();
+        }
+        Path current = snapshotFiles().get(0);
+        Path orphan = dir.resolve("car-park.journal.deadbeef.snapshot");
+        Files.copy(current, orphan); // As if the crash came before the old snapshot was deleted
+
+        CarPark reopened = new CarPark(false);
+        CarParkJournal.open(file, CarParkJournal.FsyncPolicy.NEVER, reopened).close();
+        assertEquals(List.of(current), snapshotFiles());
+        assertEquals(contents(carPark), contents(reopened));
+    }
+
+    /**
+     * Lists the checkpoint snapshot files in the test directory.
+     *
+     * @return the snapshot files
+     * @throws IOException if the directory cannot be listed
+     */
+    private List<Path> snapshotFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".snapshot")).toList();
+        }
+    }
+
+    /**
+     * Lists every spot of a car park with the registration number parked in it.
+     *
+     * @param carPark the car park
+     * @return the registration number by spot ID, or null for a vacant spot
+     */
+    static Map<String, String> contents(CarPark carPark) {
+        Map<String, String> contents = new LinkedHashMap<>();
+        carPark.snapshot().forEachSpot((spotId, car) -> contents.put(spotId, car == null ? null : car.getRegistrationNumber()));
+        return contents;
+    }
+}
@@ -0,0 +1,120 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the car park: many threads changing a concurrent car park at once, and a reset car
+ * park as seen before the cars left by the reset are swept.
+ *
+ * @author
+ * @version 5.2.1
+ */
+class CarParkTest {
+    /**
+     * Threads parking and removing cars over a few shared spots and registrations must never
+     * park one registration twice, and must leave the indexes and counts matching the spots.
+     * Each change locks a spot and a registration, so the threads also take pairs of stripes in
+     * every order.
+     */
+    @Test
+    void concurrentChangesKeepCarParkConsistent() throws Exception {
+        CarPark carPark = new CarPark(true);
+        for (int i = 0; i < 40; i++) {
+            carPark.addSpot("A" + i);
+        }
+        AtomicInteger parked = new AtomicInteger(); // Cars parked less cars removed, from the events
+        carPark.addCarParkListener(event -> parked.addAndGet(switch (event.getType()) {
+            case PARKED -> 1;
+            case REMOVED -> -1;
+            default -> 0;
+        }));
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(threads.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int step = 0; step < 20000; step++) {
+                        String spotId = "A" + random.nextInt(40);
+                        String regNumber = "R" + random.nextInt(20); // Fewer than the spots, so threads often race for one
+                        switch (random.nextInt(3)) {
+                            case 0 -> carPark.parkCar(spotId, new Car(regNumber, "Ford", "Focus", 2015));
+                            case 1 -> carPark.removeCarBySpot(spotId);
+                            default -> carPark.removeCarByRegNumber(regNumber);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(60, TimeUnit.SECONDS); // Fails on a deadlock or an exception in a thread
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        Set<String> regNumbers = new HashSet<>();
+        for (ParkingSpot spot : carPark.getSpots().values()) {
+            if (spot.isOccupied()) {
+                String regNumber = spot.getCar().getRegistrationNumber();
+                assertTrue(regNumbers.add(regNumber), regNumber + " parked twice");
+                assertEquals(spot.getId(), carPark.findCarByRegNumber(regNumber).getId());
+            }
+        }
+        assertEquals(regNumbers.size(), carPark.getOccupiedSpots());
+        assertEquals(regNumbers.size(), parked.get());
+        assertEquals(regNumbers.size(), carPark.findCarsByMake("ford").size());
+        assertTrue(carPark.isIndexConsistent());
+    }
+
+    /**
+     * Every lookup, count and view of a reset car park must show it empty straight away, before
+     * anything has swept away the cars parked until the reset, and the spots must take new cars.
+     */
+    @Test
+    void resetCarParkIsEmptyBeforeSweep() {
+        for (boolean concurrent : new boolean[] {false, true}) {
+            CarPark carPark = new CarPark(concurrent); // Single-threaded car parks are never swept in the background
+            for (int i = 0; i < 50; i++) {
+                carPark.addSpot("A" + i);
+                carPark.parkCar("A" + i, new Car("R" + i, i % 2 == 0 ? "Ford" : "Audi", "M" + i % 3, 2015));
+            }
+            carPark.resetCarPark();
+
+            assertEquals(0, carPark.getOccupiedSpots());
+            assertEquals(50, carPark.getUnoccupiedSpots());
+            assertEquals(0, carPark.findCarsByMake("ford").size());
+            assertTrue(carPark.findCarsByMake("audi").isEmpty());
+            assertEquals(0, carPark.findCarsByMakeAndModel("ford", "m0").size());
+            assertNull(carPark.findCarByRegNumber("R0"));
+            assertFalse(carPark.isCarInPark("R1"));
+            assertFalse(carPark.removeCarByRegNumber("R2"));
+            assertFalse(carPark.removeCarBySpot("A3"));
+            for (ParkingSpot spot : carPark.getSpots().values()) {
+                assertFalse(spot.isOccupied(), spot.getId() + " still occupied");
+                assertNull(spot.getCar());
+            }
+            carPark.snapshot().forEachSpot((spotId, car) -> assertNull(car, spotId + " still occupied in the snapshot"));
+
+            assertTrue(carPark.parkCar("A0", new Car("R1", "Ford", "Focus", 2020))); // A registration parked before the reset
+            assertTrue(carPark.deleteSpot("A1"));
+            assertEquals("A0", carPark.findCarByRegNumber("R1").getId());
+            assertEquals(1, carPark.findCarsByMake("ford").size());
+            assertEquals(1, carPark.getOccupiedSpots());
+            assertTrue(carPark.isIndexConsistent()); // Sweeps, so only now
+        }
+    }
+}
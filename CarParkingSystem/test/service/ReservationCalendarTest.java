@@ -0,0 +1,130 @@
+package service;
+
+import domain.Reservation;
+import org.junit.jupiter.api.Test;
+import util.ParkingSpotType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks the calendar's conflict checks and gap search against a plain list of reservations, through random
+// reservations and cancellations that split and merge the gaps between them
+class ReservationCalendarTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2030, 1, 1, 0, 0);
+    private static final int SPOTS = 6;
+
+    private static ParkingSpotType typeOf(int index) {
+        return index % 2 == 0 ? ParkingSpotType.COMPACT : ParkingSpotType.LARGE;
+    }
+
+    private static LocalDateTime hour(int hour) {
+        return BASE.plusHours(hour);
+    }
+
+    private static boolean freeInModel(List<Reservation> model, int index, LocalDateTime from, LocalDateTime to) {
+        return model.stream().noneMatch(r -> r.spotNumber() == index + 1 && r.from().isBefore(to) && from.isBefore(r.to()));
+    }
+
+    @Test
+    void matchesNaiveModelThroughReserveAndCancel() {
+        for (boolean allReserved : new boolean[] {false, true}) {
+            Random random = new Random(allReserved ? 7 : 11);
+            ReservationCalendar calendar = new ReservationCalendar(SPOTS, Duration.ofHours(2));
+            List<Reservation> model = new ArrayList<>();
+            for (int i = 0; i < SPOTS; i++) {
+                calendar.spotAdded(typeOf(i), i);
+                if (allReserved) { // Never cancelled, so every spot answers from the gap tree rather than the bitset
+                    model.add(calendar.reserve(typeOf(i), i, hour(1000), hour(1001)));
+                }
+            }
+            List<Reservation> cancellable = new ArrayList<>();
+            for (int step = 0; step < 2000; step++) {
+                int index = random.nextInt(SPOTS);
+                LocalDateTime from = hour(random.nextInt(48));
+                LocalDateTime to = from.plusHours(1 + random.nextInt(6));
+                assertEquals(freeInModel(model, index, from, to), calendar.isFree(index, from, to));
+
+                ParkingSpotType type = typeOf(index);
+                int found = calendar.findFree(type, from, to);
+                boolean anyFree = false;
+                for (int i = 0; i < SPOTS; i++) {
+                    anyFree |= typeOf(i) == type && freeInModel(model, i, from, to);
+                }
+                if (found < 0) {
+                    assertFalse(anyFree, "Missed a free " + type + " spot for " + from + " to " + to);
+                } else {
+                    assertEquals(type, typeOf(found));
+                    assertTrue(freeInModel(model, found, from, to), "Spot " + found + " is not free for " + from + " to " + to);
+                }
+
+                if (!cancellable.isEmpty() && random.nextInt(3) == 0) {
+                    Reservation cancelled = cancellable.remove(random.nextInt(cancellable.size()));
+                    assertTrue(calendar.cancel(typeOf(cancelled.spotNumber() - 1), cancelled.id()));
+                    assertFalse(calendar.cancel(typeOf(cancelled.spotNumber() - 1), cancelled.id()));
+                    model.remove(cancelled);
+                } else if (found >= 0) {
+                    Reservation reservation = calendar.reserve(type, found, from, to);
+                    model.add(reservation);
+                    cancellable.add(reservation);
+                }
+            }
+        }
+    }
+
+    @Test
+    void holdsFollowTimeAgainstNaiveModel() {
+        Random random = new Random(5);
+        Duration hold = Duration.ofHours(2);
+        ReservationCalendar calendar = new ReservationCalendar(SPOTS, hold);
+        for (int i = 0; i < SPOTS; i++) {
+            calendar.spotAdded(typeOf(i), i);
+        }
+        List<Reservation> model = new ArrayList<>();
+        boolean[] told = new boolean[SPOTS]; // Held state as passed on by advance()
+        LocalDateTime now = BASE;
+        for (int step = 0; step < 2000; step++) {
+            int index = random.nextInt(SPOTS);
+            LocalDateTime from = now.plusMinutes(random.nextInt(6 * 60));
+            LocalDateTime to = from.plusMinutes(30 + random.nextInt(3 * 60));
+            if (calendar.isFree(index, from, to) && random.nextBoolean()) {
+                model.add(calendar.reserve(typeOf(index), index, from, to));
+            } else if (!model.isEmpty()) {
+                Reservation cancelled = model.remove(random.nextInt(model.size()));
+                calendar.cancel(typeOf(cancelled.spotNumber() - 1), cancelled.id());
+                told[cancelled.spotNumber() - 1] = calendar.isHeld(cancelled.spotNumber() - 1); // The service looks again
+            }
+            now = now.plusMinutes(random.nextInt(40));
+            calendar.advance(now, i -> told[i] = !told[i]);
+            for (int i = 0; i < SPOTS; i++) {
+                LocalDateTime time = now;
+                int spot = i + 1;
+                boolean held = model.stream().anyMatch(r -> r.spotNumber() == spot
+                        && !r.from().minus(hold).isAfter(time) && r.to().isAfter(time));
+                assertEquals(held, calendar.isHeld(i), "Spot " + i + " at " + now);
+                assertEquals(held, told[i], "Change of spot " + i + " not passed on at " + now);
+            }
+        }
+    }
+
+    @Test
+    void cancelMergesGapsBackTogether() {
+        ReservationCalendar calendar = new ReservationCalendar(1, Duration.ofHours(2));
+        calendar.spotAdded(ParkingSpotType.COMPACT, 0);
+        calendar.reserve(ParkingSpotType.COMPACT, 0, hour(0), hour(1));
+        Reservation middle = calendar.reserve(ParkingSpotType.COMPACT, 0, hour(2), hour(3));
+        calendar.reserve(ParkingSpotType.COMPACT, 0, hour(4), hour(5));
+        assertEquals(-1, calendar.findFree(ParkingSpotType.COMPACT, hour(1), hour(4)));
+
+        assertTrue(calendar.cancel(ParkingSpotType.COMPACT, middle.id()));
+        assertEquals(0, calendar.findFree(ParkingSpotType.COMPACT, hour(1), hour(4)));
+        assertEquals(-1, calendar.findFree(ParkingSpotType.COMPACT, hour(1), hour(5)));
+        assertEquals(0, calendar.firstReserved(0, 1));
+    }
+}
@@ -0,0 +1,42 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Checks findFirstRun against a scan of a plain array through random frees and takes, including runs that
+// straddle node boundaries and capacities that are not a power of two
+class FreeRunTreeTest {
+    private static int firstRun(boolean[] free, int length) {
+        int run = 0;
+        for (int i = 0; i < free.length; i++) {
+            run = free[i] ? run + 1 : 0;
+            if (length > 0 && run == length) {
+                return i - length + 1;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    void findFirstRunMatchesScan() {
+        Random random = new Random(13);
+        for (int capacity : new int[] {1, 2, 5, 64, 300}) {
+            FreeRunTree tree = new FreeRunTree(capacity);
+            boolean[] free = new boolean[capacity];
+            for (int step = 0; step < 5000; step++) {
+                int index = random.nextInt(capacity);
+                free[index] = random.nextInt(4) > 0; // Mostly free, so long runs form
+                tree.set(index, free[index]);
+                int length = random.nextInt(Math.min(capacity, 40) + 2);
+                assertEquals(firstRun(free, length), tree.findFirstRun(length),
+                        "Run of " + length + " in capacity " + capacity + " at step " + step);
+            }
+            for (int length = 0; length <= capacity + 1; length++) {
+                assertEquals(firstRun(free, length), tree.findFirstRun(length));
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Checks the map against a HashMap through random puts and removes over few keys, so probe runs collide, wrap around
+// the end of the table and are shifted back on every removal
+class IntIntOpenHashMapTest {
+    @Test
+    void matchesHashMapThroughPutsAndRemoves() {
+        Random random = new Random(3);
+        for (int keys : new int[] {8, 24, 200, 5000}) {
+            IntIntOpenHashMap map = new IntIntOpenHashMap();
+            Map<Integer, Integer> model = new HashMap<>();
+            for (int step = 0; step < 20000; step++) {
+                int key = random.nextInt(keys);
+                if (random.nextBoolean()) {
+                    int value = random.nextInt(1000);
+                    assertEquals(model.getOrDefault(key, IntIntOpenHashMap.NO_VALUE), map.put(key, value));
+                    model.put(key, value);
+                } else {
+                    assertEquals(model.getOrDefault(key, IntIntOpenHashMap.NO_VALUE), map.remove(key));
+                    model.remove(key);
+                }
+                assertEquals(model.size(), map.size());
+                if (step % 97 == 0) {
+                    for (int k = 0; k < keys; k++) { // Every key still reachable after the shifts
+                        assertEquals(model.getOrDefault(k, IntIntOpenHashMap.NO_VALUE), map.get(k));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void removingEveryKeyEmptiesTheMap() {
+        IntIntOpenHashMap map = new IntIntOpenHashMap();
+        for (int k = 0; k < 1000; k++) {
+            map.put(k * 16, k); // Same home slot in a small table, one long run until it grows
+        }
+        for (int k = 999; k >= 0; k -= 2) {
+            assertEquals(k, map.remove(k * 16));
+        }
+        for (int k = 0; k < 1000; k++) {
+            assertEquals(k % 2 == 0 ? k : IntIntOpenHashMap.NO_VALUE, map.get(k * 16));
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(IntIntOpenHashMap.NO_VALUE, map.get(0));
+    }
+}
@@ -0,0 +1,63 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks findCovering against a plain list of the intervals, through random adds and removes
+class IntervalTreeTest {
+    private record Interval(long start, long end, int value) {
+        boolean covers(long from, long to) {
+            return start <= from && end >= to;
+        }
+    }
+
+    @Test
+    void findCoveringMatchesNaiveModel() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            IntervalTree tree = new IntervalTree();
+            List<Interval> model = new ArrayList<>();
+            for (int step = 0; step < 400; step++) {
+                if (model.isEmpty() || random.nextInt(3) > 0) {
+                    int value = random.nextInt(20);
+                    long start = random.nextInt(100);
+                    long end = start + 1 + random.nextInt(40);
+                    if (model.stream().noneMatch(i -> i.start() == start && i.value() == value)) {
+                        tree.add(start, end, value); // A value tags several intervals only with different starts
+                        model.add(new Interval(start, end, value));
+                    }
+                } else {
+                    Interval removed = model.remove(random.nextInt(model.size()));
+                    assertTrue(tree.remove(removed.start(), removed.value()));
+                }
+                assertEquals(model.size(), tree.size());
+                long from = random.nextInt(120);
+                long to = from + 1 + random.nextInt(30);
+                int found = tree.findCovering(from, to);
+                boolean covered = model.stream().anyMatch(i -> i.covers(from, to));
+                if (found < 0) {
+                    assertFalse(covered, "Missed a covering interval for [" + from + ", " + to + ")");
+                } else {
+                    assertTrue(model.stream().anyMatch(i -> i.value() == found && i.covers(from, to)),
+                            "Value " + found + " tags no interval covering [" + from + ", " + to + ")");
+                }
+            }
+        }
+    }
+
+    @Test
+    void removeOfMissingIntervalLeavesTreeAlone() {
+        IntervalTree tree = new IntervalTree();
+        tree.add(0, 10, 1);
+        assertFalse(tree.remove(0, 2));
+        assertFalse(tree.remove(5, 1));
+        assertEquals(1, tree.findCovering(2, 8));
+    }
+}
@@ -0,0 +1,88 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Drives the wheel with a hand-moved clock through random schedules, cancels and advances, over few buckets so
+// timeouts wait several laps, and checks each one expires once, after its deadline and within a tick of it
+class TimingWheelTest {
+    private static final long TICK = 10;
+
+    @Test
+    void expiresWithinOneTickOfDeadline() {
+        Random random = new Random(9);
+        long[] now = {1_000_003}; // Not a multiple of the tick
+        Set<Integer> expired = new HashSet<>();
+        TimingWheel<Integer> wheel = new TimingWheel<>(TICK, 8, () -> now[0], item -> assertTrue(expired.add(item)));
+        Map<Integer, TimingWheel.Timeout<Integer>> pending = new HashMap<>();
+        List<TimingWheel.Timeout<Integer>> done = new ArrayList<>(); // Expired or cancelled
+        for (int step = 0; step < 20000; step++) {
+            int choice = random.nextInt(10);
+            if (choice < 5) {
+                long delay = random.nextInt(2000) - 100;
+                TimingWheel.Timeout<Integer> timeout = wheel.schedule(step, delay);
+                assertEquals(now[0] + Math.max(0, delay), timeout.getDeadline());
+                pending.put(step, timeout);
+            } else if (choice < 7 && !pending.isEmpty()) {
+                List<Integer> items = new ArrayList<>(pending.keySet());
+                TimingWheel.Timeout<Integer> timeout = pending.remove(items.get(random.nextInt(items.size())));
+                assertTrue(wheel.cancel(timeout));
+                done.add(timeout);
+            } else {
+                now[0] += random.nextInt(3 * (int) TICK);
+                expired.clear();
+                assertEquals(wheel.advance(), expired.size());
+                for (int item : expired) {
+                    TimingWheel.Timeout<Integer> timeout = pending.remove(item);
+                    assertNotNull(timeout, "Item " + item + " expired twice or after being cancelled");
+                    assertTrue(now[0] > timeout.getDeadline(), "Item " + item + " expired before its deadline");
+                    done.add(timeout);
+                }
+                for (TimingWheel.Timeout<Integer> timeout : pending.values()) {
+                    assertTrue(now[0] < timeout.getDeadline() + TICK, "Item " + timeout.getItem() + " overdue at " + now[0]);
+                }
+            }
+            assertEquals(pending.size(), wheel.size());
+            if (!done.isEmpty() && random.nextInt(20) == 0) {
+                assertFalse(wheel.cancel(done.get(random.nextInt(done.size()))));
+            }
+        }
+    }
+
+    @Test
+    void cancelledTimeoutNeverExpires() {
+        long[] now = {0};
+        List<String> expired = new ArrayList<>();
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 4, () -> now[0], expired::add);
+        TimingWheel.Timeout<String> kept = wheel.schedule("kept", 25);
+        TimingWheel.Timeout<String> cancelled = wheel.schedule("cancelled", 25);
+        wheel.schedule("later", 100); // Same bucket as the others, two laps on
+
+        now[0] = 25;
+        assertEquals(0, wheel.advance()); // Due, but its tick is not over yet
+        assertTrue(wheel.cancel(cancelled));
+        now[0] = 30;
+        assertEquals(1, wheel.advance());
+        assertEquals(List.of("kept"), expired);
+        assertFalse(wheel.cancel(kept));
+        assertFalse(wheel.cancel(cancelled));
+        assertEquals(1, wheel.size());
+
+        now[0] = 110;
+        assertEquals(1, wheel.advance());
+        assertEquals(List.of("kept", "later"), expired);
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,149 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import util.IdCodec;
+
+import java.util.concurrent.TimeUnit;
+
+// Core CarPark operations at park sizes from 100 to 1M spots and at several occupancy ratios
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class CarParkBenchmark {
+    static final String[] MAKES = {"Toyota", "Ford", "Volkswagen", "Honda", "BMW", "Audi", "Nissan", "Kia"};
+
+    @Param({"100", "10000", "1000000"})
+    public int spots;
+
+    @Param({"0.1", "0.5", "0.9"})
+    public double occupancy;
+
+    // packed: spot IDs like A123 and plates like A1234, which the car park keys by their code, for as many
+    // spots and cars as the formats have room for; free: IDs outside those formats, found by string
+    @Param({"packed", "free"})
+    public String ids;
+
+    private Object carPark;
+    private String[] spotIds;
+    private String[] parkedRegNumbers; // Registration numbers of cars currently parked
+    private int vacantSpot; // A spot left free for the park/remove benchmark
+    private Object visitor; // Car parked and removed again by parkCar
+    private int next; // Cursor over the lookup keys
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        carPark = CarParkHandles.newCarPark(false);
+        spotIds = new String[spots];
+        int parked = Math.min((int) (spots * occupancy), spots - 1);
+        parkedRegNumbers = new String[Math.max(parked, 1)];
+        boolean packed = ids.equals("packed");
+        for (int i = 0; i < spots; i++) {
+            spotIds[i] = spotId(i, packed);
+            CarParkHandles.addSpot(carPark, spotIds[i]);
+        }
+        fill(carPark, spotIds, parked, parkedRegNumbers, packed);
+        vacantSpot = spots - 1;
+        visitor = CarParkHandles.newCar(regNumber(parked, packed), "Toyota", "Yaris", 2020); // Not among the parked
+    }
+
+    // The i-th spot ID, packed while the [A-Z]\d{3} format has room
+    static String spotId(int i, boolean packed) {
+        return packed && i < IdCodec.SPOT_ID_CODES ? IdCodec.decodeSpotId(i) : "S" + i;
+    }
+
+    // The i-th registration number, packed while the [A-Z]\d{4} format has room
+    static String regNumber(int i, boolean packed) {
+        return packed && i < IdCodec.PLATE_CODES ? IdCodec.decodePlate(i) : "R" + i;
+    }
+
+    // Parks cars in the first count spots, spreading them over the makes
+    static void fill(Object carPark, String[] spotIds, int count, String[] regNumbers, boolean packed) throws Throwable {
+        for (int i = 0; i < count; i++) {
+            String regNumber = regNumber(i, packed);
+            CarParkHandles.parkCar(carPark, spotIds[i], CarParkHandles.newCar(regNumber, MAKES[i % MAKES.length], "Model", 2004 + i % 20));
+            regNumbers[i] = regNumber;
+        }
+    }
+
+    private int nextIndex(int bound) {
+        int i = next++;
+        if (next >= bound) {
+            next = 0;
+        }
+        return i;
+    }
+
+    // Parks a car and removes it again, so the park stays at the configured occupancy
+    @Benchmark
+    public boolean parkCar() throws Throwable {
+        CarParkHandles.parkCar(carPark, spotIds[vacantSpot], visitor);
+        return CarParkHandles.removeCarBySpot(carPark, spotIds[vacantSpot]);
+    }
+
+    @Benchmark
+    public Object findCarByRegNumber() throws Throwable {
+        return CarParkHandles.findCarByRegNumber(carPark, parkedRegNumbers[nextIndex(parkedRegNumbers.length)]);
+    }
+
+    // Walks the result as the GUI dialog does, so the cost of a result proportional to the park shows up
+    @Benchmark
+    public void findCarsByMake(Blackhole blackhole) throws Throwable {
+        for (Object spot : CarParkHandles.findCarsByMake(carPark, MAKES[nextIndex(MAKES.length)]).values()) {
+            blackhole.consume(spot);
+        }
+    }
+
+    @Benchmark
+    public int getOccupiedSpots() throws Throwable {
+        return CarParkHandles.getOccupiedSpots(carPark);
+    }
+
+    // resetCarPark empties the park, so each call gets a freshly filled one
+    @State(Scope.Thread)
+    public static class ResetState {
+        Object carPark;
+        String[] spotIds;
+        int parked;
+        boolean packed;
+
+        @Setup(Level.Trial)
+        public void setUp(CarParkBenchmark benchmark) throws Throwable {
+            carPark = CarParkHandles.newCarPark(false);
+            spotIds = benchmark.spotIds;
+            parked = Math.min((int) (benchmark.spots * benchmark.occupancy), benchmark.spots - 1);
+            packed = benchmark.ids.equals("packed");
+            for (String spotId : spotIds) {
+                CarParkHandles.addSpot(carPark, spotId);
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void refill() throws Throwable {
+            fill(carPark, spotIds, parked, new String[Math.max(parked, 1)], packed);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Measurement(iterations = 20)
+    @Warmup(iterations = 5)
+    public void resetCarPark(ResetState state) throws Throwable {
+        CarParkHandles.resetCarPark(state.carPark);
+    }
+}
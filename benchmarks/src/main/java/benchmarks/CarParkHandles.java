@@ -0,0 +1,127 @@
+package benchmarks;
+
+import util.SpotSnapshot;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Path;
+import java.util.Map;
+
+// CarPark and Car live in the unnamed package, which code in a named package (and so every JMH
+// benchmark) cannot name. They are bound once here through static final method handles, which the
+// JIT treats as constants and inlines like direct calls.
+final class CarParkHandles {
+    private static final MethodHandle NEW_CAR_PARK;
+    private static final MethodHandle NEW_CAR;
+    private static final MethodHandle ADD_SPOT;
+    private static final MethodHandle PARK_CAR;
+    private static final MethodHandle REMOVE_CAR_BY_SPOT;
+    private static final MethodHandle FIND_CAR_BY_REG_NUMBER;
+    private static final MethodHandle FIND_CARS_BY_MAKE;
+    private static final MethodHandle GET_OCCUPIED_SPOTS;
+    private static final MethodHandle RESET_CAR_PARK;
+    private static final MethodHandle WRITE_SNAPSHOT;
+    private static final MethodHandle FROM_SNAPSHOT;
+    private static final MethodHandle OPEN_JOURNAL;
+    private static final Object NO_FSYNC; // CarParkJournal.FsyncPolicy.NEVER
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> carPark = Class.forName("CarPark");
+            Class<?> car = Class.forName("Car");
+            NEW_CAR_PARK = erase(lookup.findConstructor(carPark, MethodType.methodType(void.class, boolean.class)));
+            NEW_CAR = erase(lookup.findConstructor(car,
+                    MethodType.methodType(void.class, String.class, String.class, String.class, int.class)));
+            ADD_SPOT = erase(lookup.findVirtual(carPark, "addSpot", MethodType.methodType(boolean.class, String.class)));
+            PARK_CAR = erase(lookup.findVirtual(carPark, "parkCar", MethodType.methodType(boolean.class, String.class, car)));
+            REMOVE_CAR_BY_SPOT = erase(lookup.findVirtual(carPark, "removeCarBySpot",
+                    MethodType.methodType(boolean.class, String.class)));
+            FIND_CAR_BY_REG_NUMBER = erase(lookup.findVirtual(carPark, "findCarByRegNumber",
+                    MethodType.methodType(Class.forName("ParkingSpot"), String.class)));
+            FIND_CARS_BY_MAKE = erase(lookup.findVirtual(carPark, "findCarsByMake", MethodType.methodType(Map.class, String.class)));
+            GET_OCCUPIED_SPOTS = erase(lookup.findVirtual(carPark, "getOccupiedSpots", MethodType.methodType(int.class)));
+            RESET_CAR_PARK = erase(lookup.findVirtual(carPark, "resetCarPark", MethodType.methodType(void.class)));
+            WRITE_SNAPSHOT = erase(lookup.findVirtual(carPark, "writeSnapshot", MethodType.methodType(void.class, Path.class)));
+            FROM_SNAPSHOT = erase(lookup.findStatic(carPark, "fromSnapshot",
+                    MethodType.methodType(carPark, SpotSnapshot.class, boolean.class)));
+            Class<?> journal = Class.forName("CarParkJournal");
+            Class<?> fsyncPolicy = Class.forName("CarParkJournal$FsyncPolicy");
+            OPEN_JOURNAL = erase(lookup.findStatic(journal, "open", MethodType.methodType(journal, Path.class, fsyncPolicy, carPark)));
+            NO_FSYNC = fsyncPolicy.getField("NEVER").get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private CarParkHandles() {
+    }
+
+    // Replaces the unnameable classes in a handle's type with Object so it can be called with invokeExact
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isUnnamed(type.parameterType(i))) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if (isUnnamed(type.returnType())) {
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+
+    private static boolean isUnnamed(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && type.getPackageName().isEmpty();
+    }
+
+    static Object newCarPark(boolean concurrent) throws Throwable {
+        return (Object) NEW_CAR_PARK.invokeExact(concurrent);
+    }
+
+    static Object newCar(String regNumber, String make, String model, int year) throws Throwable {
+        return (Object) NEW_CAR.invokeExact(regNumber, make, model, year);
+    }
+
+    static boolean addSpot(Object carPark, String spotId) throws Throwable {
+        return (boolean) ADD_SPOT.invokeExact(carPark, spotId);
+    }
+
+    static boolean parkCar(Object carPark, String spotId, Object car) throws Throwable {
+        return (boolean) PARK_CAR.invokeExact(carPark, spotId, car);
+    }
+
+    static boolean removeCarBySpot(Object carPark, String spotId) throws Throwable {
+        return (boolean) REMOVE_CAR_BY_SPOT.invokeExact(carPark, spotId);
+    }
+
+    static Object findCarByRegNumber(Object carPark, String regNumber) throws Throwable {
+        return (Object) FIND_CAR_BY_REG_NUMBER.invokeExact(carPark, regNumber);
+    }
+
+    static Map<?, ?> findCarsByMake(Object carPark, String make) throws Throwable {
+        return (Map<?, ?>) FIND_CARS_BY_MAKE.invokeExact(carPark, make);
+    }
+
+    static int getOccupiedSpots(Object carPark) throws Throwable {
+        return (int) GET_OCCUPIED_SPOTS.invokeExact(carPark);
+    }
+
+    static void resetCarPark(Object carPark) throws Throwable {
+        RESET_CAR_PARK.invokeExact(carPark);
+    }
+
+    static void writeSnapshot(Object carPark, Path file) throws Throwable {
+        WRITE_SNAPSHOT.invokeExact(carPark, file);
+    }
+
+    static Object fromSnapshot(SpotSnapshot snapshot, boolean concurrent) throws Throwable {
+        return (Object) FROM_SNAPSHOT.invokeExact(snapshot, concurrent);
+    }
+
+    // Replays the journal into an empty car park and attaches it, never forcing it to disk
+    static AutoCloseable openJournal(Path file, Object carPark) throws Throwable {
+        return (AutoCloseable) (Object) OPEN_JOURNAL.invokeExact(file, NO_FSYNC, carPark);
+    }
+}
@@ -0,0 +1,114 @@
+package benchmarks;
+
+import domain.Car;
+import domain.ParkingSpot;
+import domain.Reservation;
+import domain.SpotLocation;
+import exceptions.ParkingFullException;
+import exceptions.ReservationConflictException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import service.ParkingService;
+import service.SpotQuery;
+import util.ParkingSpotType;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// ParkingService operations at park sizes from 100 to 1M spots and at several occupancy ratios
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ParkingServiceBenchmark {
+    private static final LocalDateTime RESERVED_FROM = LocalDateTime.of(2030, 1, 1, 9, 0);
+
+    @Param({"100", "10000", "1000000"})
+    public int spots;
+
+    @Param({"0.1", "0.5", "0.9"})
+    public double occupancy;
+
+    private ParkingService service;
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Spots and parkCar log to the console
+        service = new ParkingService(spots);
+        for (ParkingSpotType type : ParkingSpotType.values()) { // Same occupancy for every type
+            int parked = (int) (service.getOccupancy().getTotalSpots(type) * occupancy);
+            for (int i = 0; i < parked; i++) {
+                try {
+                    service.allocate(type, new Car(type + "-" + i));
+                } catch (ParkingFullException e) {
+                    throw new IllegalStateException(e); // Cannot happen, fewer cars than spots of the type
+                }
+            }
+        }
+        service.addEntrance("gate", new SpotLocation(0, 0, spots / 2));
+        service.findNearestFree("gate", ParkingSpotType.COMPACT); // Ranks the spots outside the measurement
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public long filterParkingSpots() {
+        return service.filterParkingSpots(spot -> spot.getType() == ParkingSpotType.HANDICAPPED && !spot.isOccupied()).count();
+    }
+
+    // The same spots as filterParkingSpots, found through the free bitset of the type
+    @Benchmark
+    public long query() {
+        return service.query(SpotQuery.all().ofType(ParkingSpotType.HANDICAPPED).free()).count();
+    }
+
+    @Benchmark
+    public ParkingService parkCar() throws ParkingFullException {
+        service.parkCar();
+        return service;
+    }
+
+    // Allocates the lowest free COMPACT spot and releases it again
+    @Benchmark
+    public ParkingSpot allocate() throws ParkingFullException {
+        ParkingSpot spot = service.allocate(ParkingSpotType.COMPACT, new Car("BENCH"));
+        service.release(spot.getSpotNumber());
+        return spot;
+    }
+
+    // Allocates the free COMPACT spot nearest an entrance halfway along the row and releases it again
+    @Benchmark
+    public ParkingSpot allocateNearest() throws ParkingFullException {
+        ParkingSpot spot = service.allocateNearest("gate", ParkingSpotType.COMPACT, new Car("BENCH"));
+        service.release(spot.getSpotNumber());
+        return spot;
+    }
+
+    // Reserves a COMPACT spot for an hour, found through the reservation gaps, and cancels it again
+    @Benchmark
+    public Reservation reserve() throws ReservationConflictException {
+        Reservation reservation = service.reserve(ParkingSpotType.COMPACT, RESERVED_FROM, RESERVED_FROM.plusHours(1));
+        service.cancel(reservation.id());
+        return reservation;
+    }
+}
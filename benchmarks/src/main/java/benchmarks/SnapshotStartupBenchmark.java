@@ -0,0 +1,136 @@
+package benchmarks;
+
+import domain.Car;
+import exceptions.ParkingFullException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import service.ParkingService;
+import util.ParkingSpotType;
+import util.SpotSnapshot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Startup of a half-full car park: rebuilt from scratch, replayed from its journal or loaded from a binary snapshot.
+// Each measurement is one cold start, so the score is the time a restart would take.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class SnapshotStartupBenchmark {
+    @Param({"10000", "200000"})
+    public int spots;
+
+    private Path dir;
+    private Path journalFile;
+    private Path carParkSnapshot;
+    private Path serviceSnapshot;
+    private PrintStream console;
+    private SpotSnapshot serviceSource; // Read lazily by the service built from it, so open until the iteration ends
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        dir = Files.createTempDirectory("car-park-startup");
+        journalFile = dir.resolve("car-park.journal");
+        carParkSnapshot = dir.resolve("car-park.snapshot");
+        serviceSnapshot = dir.resolve("parking-service.snapshot");
+
+        Object source = CarParkHandles.newCarPark(false);
+        AutoCloseable journal = CarParkHandles.openJournal(journalFile, source);
+        try {
+            fill(source, spots);
+        } finally {
+            journal.close();
+        }
+        CarParkHandles.writeSnapshot(source, carParkSnapshot);
+
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Spots log every park
+        ParkingService service = new ParkingService(spots);
+        for (int i = 0; i < spots / 2; i++) {
+            try {
+                service.allocate(ParkingSpotType.COMPACT, new Car("P" + i));
+            } catch (ParkingFullException e) {
+                break; // No COMPACT spots left
+            }
+        }
+        service.writeSnapshot(serviceSnapshot);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeServiceSource() throws IOException {
+        if (serviceSource != null) {
+            serviceSource.close();
+            serviceSource = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(console);
+        for (Path file : new Path[] {journalFile, carParkSnapshot, serviceSnapshot, dir}) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Adds the spots and parks a car in every other one
+    private static void fill(Object carPark, int spots) throws Throwable {
+        for (int i = 0; i < spots; i++) {
+            String spotId = "S" + i;
+            CarParkHandles.addSpot(carPark, spotId);
+            if (i % 2 == 0) {
+                CarParkHandles.parkCar(carPark, spotId, CarParkHandles.newCar("R" + i, "Make" + (i % 20),
+                        "Model" + (i % 7), 2004 + i % 20));
+            }
+        }
+    }
+
+    @Benchmark
+    public Object carParkRebuilt() throws Throwable {
+        Object carPark = CarParkHandles.newCarPark(false);
+        fill(carPark, spots);
+        return carPark;
+    }
+
+    @Benchmark
+    public Object carParkReplayed() throws Throwable {
+        Object carPark = CarParkHandles.newCarPark(false);
+        CarParkHandles.openJournal(journalFile, carPark).close();
+        return carPark;
+    }
+
+    @Benchmark
+    public Object carParkFromSnapshot() throws Throwable {
+        try (SpotSnapshot snapshot = SpotSnapshot.open(carParkSnapshot)) {
+            return CarParkHandles.fromSnapshot(snapshot, false);
+        }
+    }
+
+    @Benchmark
+    public ParkingService serviceBuilt() {
+        return new ParkingService(spots);
+    }
+
+    @Benchmark
+    public ParkingService serviceFromSnapshot() throws IOException {
+        serviceSource = SpotSnapshot.open(serviceSnapshot); // Must stay open for the life of the service
+        return new ParkingService(serviceSource);
+    }
+}